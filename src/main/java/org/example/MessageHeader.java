@@ -0,0 +1,22 @@
+package org.example;
+
+import org.example.routing.RoutingCriteria;
+
+/**
+ * The MessageHeader fields of a TAF/TAP TSI message. Fields missing in the message are null.
+ */
+public record MessageHeader(
+        String messageType,
+        String messageTypeVersion,
+        String messageIdentifier,
+        String messageDateTime,
+        String sender,
+        String recipient
+) {
+
+    public static final MessageHeader EMPTY = new MessageHeader(null, null, null, null, null, null);
+
+    public RoutingCriteria routingCriteria() {
+        return new RoutingCriteria(messageType, messageTypeVersion, recipient);
+    }
+}
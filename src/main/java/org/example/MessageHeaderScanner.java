@@ -0,0 +1,204 @@
+package org.example;
+
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+
+/**
+ * Reads the MessageHeader of a message in a single pass that ends with the header, so the cost does not depend on
+ * the size of the message body. Elements are matched by local name only, so prefixes and namespace versions of
+ * the message do not matter.
+ */
+public final class MessageHeaderScanner {
+
+    private static final String MESSAGE_HEADER = "MessageHeader";
+    private static final String MESSAGE_REFERENCE = "MessageReference";
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private MessageHeaderScanner() {
+    }
+
+    /**
+     * Walks the tree in document order up to the first MessageHeader element and reads its fields.
+     */
+    public static MessageHeader scan(Node node) {
+        Node messageHeader = findMessageHeader(node);
+        if (messageHeader == null) return MessageHeader.EMPTY;
+
+        Fields fields = new Fields();
+        for (Node child = messageHeader.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            String name = localName(child);
+            if (MESSAGE_REFERENCE.equals(name)) {
+                for (Node reference = child.getFirstChild(); reference != null; reference = reference.getNextSibling()) {
+                    if (reference.getNodeType() == Node.ELEMENT_NODE) {
+                        fields.setReferenceField(localName(reference), reference.getTextContent());
+                    }
+                }
+            } else {
+                fields.setHeaderField(name, child.getTextContent());
+            }
+        }
+        return fields.toMessageHeader();
+    }
+
+    /**
+     * Reads the header from a serialized message and stops parsing as soon as the header element is closed.
+     */
+    public static MessageHeader scan(InputStream inputStream) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+        try {
+            int depth = 0;
+            int headerDepth = -1;
+            String referenceField = null;
+            String headerField = null;
+            boolean inReference = false;
+            Fields fields = new Fields();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String name = reader.getLocalName();
+                    if (headerDepth < 0) {
+                        if (MESSAGE_HEADER.equals(name)) headerDepth = depth;
+                    } else if (depth == headerDepth + 1) {
+                        inReference = MESSAGE_REFERENCE.equals(name);
+                        if (!inReference) headerField = name;
+                    } else if (inReference && depth == headerDepth + 2) {
+                        referenceField = name;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == headerDepth) break;
+                    if (depth == headerDepth + 1) {
+                        inReference = false;
+                        headerField = null;
+                    } else if (depth == headerDepth + 2) {
+                        referenceField = null;
+                    }
+                    depth--;
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    if (referenceField != null) {
+                        fields.appendReferenceField(referenceField, reader.getText());
+                    } else if (headerField != null) {
+                        fields.appendHeaderField(headerField, reader.getText());
+                    }
+                }
+            }
+            return fields.toMessageHeader();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static Node findMessageHeader(Node node) {
+        Node current = node;
+        while (current != null) {
+            if (current.getNodeType() == Node.ELEMENT_NODE && MESSAGE_HEADER.equals(localName(current))) {
+                return current;
+            }
+            current = next(node, current);
+        }
+        return null;
+    }
+
+    /**
+     * The next node in document order below {@code root}, or null once the subtree is exhausted.
+     */
+    private static Node next(Node root, Node current) {
+        if (current.getFirstChild() != null) return current.getFirstChild();
+        while (current != root) {
+            if (current.getNextSibling() != null) return current.getNextSibling();
+            current = current.getParentNode();
+        }
+        return null;
+    }
+
+    private static String localName(Node node) {
+        if (node.getLocalName() != null) return node.getLocalName();
+        // Nodes of a DOM that was not built namespace aware only have a qualified name
+        String nodeName = node.getNodeName();
+        return nodeName.substring(nodeName.indexOf(':') + 1);
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        try {
+            factory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        } catch (IllegalArgumentException e) {
+            // Not every StAX implementation knows the JAXP property, DTDs are disabled anyway
+        }
+        return factory;
+    }
+
+    private static final class Fields {
+        private final StringBuilder messageType = new StringBuilder();
+        private final StringBuilder messageTypeVersion = new StringBuilder();
+        private final StringBuilder messageIdentifier = new StringBuilder();
+        private final StringBuilder messageDateTime = new StringBuilder();
+        private final StringBuilder sender = new StringBuilder();
+        private final StringBuilder recipient = new StringBuilder();
+
+        private void setReferenceField(String name, String value) {
+            StringBuilder field = referenceField(name);
+            if (field != null && field.isEmpty()) field.append(value);
+        }
+
+        private void setHeaderField(String name, String value) {
+            StringBuilder field = headerField(name);
+            if (field != null && field.isEmpty()) field.append(value);
+        }
+
+        private void appendReferenceField(String name, String text) {
+            StringBuilder field = referenceField(name);
+            if (field != null) field.append(text);
+        }
+
+        private void appendHeaderField(String name, String text) {
+            StringBuilder field = headerField(name);
+            if (field != null) field.append(text);
+        }
+
+        private StringBuilder referenceField(String name) {
+            return switch (name) {
+                case "MessageType" -> messageType;
+                case "MessageTypeVersion" -> messageTypeVersion;
+                case "MessageIdentifier" -> messageIdentifier;
+                case "MessageDateTime" -> messageDateTime;
+                default -> null;
+            };
+        }
+
+        private StringBuilder headerField(String name) {
+            return switch (name) {
+                case "Sender" -> sender;
+                case "Recipient" -> recipient;
+                default -> null;
+            };
+        }
+
+        private MessageHeader toMessageHeader() {
+            return new MessageHeader(
+                    value(messageType),
+                    value(messageTypeVersion),
+                    value(messageIdentifier),
+                    value(messageDateTime),
+                    value(sender),
+                    value(recipient)
+            );
+        }
+
+        private static String value(StringBuilder field) {
+            String value = field.toString().trim();
+            return value.isEmpty() ? null : value;
+        }
+    }
+}
@@ -1,69 +1,205 @@
 package org.example;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.example.util.XmlUtilityService;
 import org.xml.sax.SAXException;
 
 import javax.xml.validation.Schema;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
+import java.net.JarURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Compiles the TAF/TAP TSI schemas found in the {@code schemas/} resource directory, one per sector version, named
+ * {@code <name>_<version>.xsd}. Versions are compiled in parallel at startup, except for those configured as lazy,
+ * which are compiled by their first caller.
+ */
 @Startup
 @ApplicationScoped
 public class XmlSchemaService {
 
     private static final String SCHEMA_DIRECTORY = "schemas/";
-    private static final List<String> SCHEMA_FILES = List.of(
-            "taf_cat_complete_sector_3.1.0.0.xsd",
-            "taf_cat_complete_sector_3.5.0.0.xsd"
-    );
+    private static final String SCHEMA_EXTENSION = ".xsd";
 
     private final XmlUtilityService xmlUtilityService;
-    private final Map<String, Schema> version2Schema = new HashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Set<String> lazyVersions;
+    private final Map<String, URL> version2SchemaFile = new TreeMap<>();
+    private final Map<String, CompletableFuture<Optional<Schema>>> version2Schema = new ConcurrentHashMap<>();
 
-    public XmlSchemaService(XmlUtilityService xmlUtilityService) {
+    public XmlSchemaService(
+            XmlUtilityService xmlUtilityService,
+            MeterRegistry meterRegistry,
+            @ConfigProperty(name = "comint.schemas.lazy-versions") Optional<List<String>> lazyVersions
+    ) {
         this.xmlUtilityService = xmlUtilityService;
+        this.meterRegistry = meterRegistry;
+        this.lazyVersions = lazyVersions.orElse(List.of()).stream()
+                .map(String::trim)
+                .map(XmlSchemaService::normalize)
+                .collect(Collectors.toSet());
     }
 
     @PostConstruct
     void init() {
+        discoverSchemaFiles();
         loadSchemas();
     }
 
-    private void loadSchemas() {
-        Log.info("***** Loading schemas *****");
+    /**
+     * A schema directory without any schema found in it is in a location that cannot be listed. Starting without
+     * schemas would refuse every message, so startup fails instead.
+     */
+    private void discoverSchemaFiles() {
         ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
-        SCHEMA_FILES.forEach(schemaFile -> loadSchema(schemaFile, classLoader));
+        List<URL> directories = new ArrayList<>();
+        try {
+            Enumeration<URL> resources = classLoader.getResources(SCHEMA_DIRECTORY);
+            while (resources.hasMoreElements()) {
+                URL directory = resources.nextElement();
+                directories.add(directory);
+                for (URL schemaFile : listSchemaFiles(directory)) {
+                    addSchemaFile(schemaFile);
+                }
+            }
+        } catch (IOException | URISyntaxException e) {
+            Log.errorf(e, "Failed to list schema directory %s", SCHEMA_DIRECTORY);
+        }
+        if (!directories.isEmpty() && version2SchemaFile.isEmpty()) {
+            throw new IllegalStateException("Failed to find schema files in " + directories);
+        }
+    }
+
+    /**
+     * The directory is a plain directory when running from the build output and a jar entry in a packaged application.
+     */
+    private List<URL> listSchemaFiles(URL directory) throws IOException, URISyntaxException {
+        List<URL> schemaFiles = new ArrayList<>();
+        switch (directory.getProtocol()) {
+            case "file" -> {
+                try (Stream<Path> files = Files.list(Path.of(directory.toURI()))) {
+                    for (Path file : files.filter(file -> file.getFileName().toString().endsWith(SCHEMA_EXTENSION)).toList()) {
+                        schemaFiles.add(file.toUri().toURL());
+                    }
+                }
+            }
+            case "jar" -> {
+                JarURLConnection connection = (JarURLConnection) directory.openConnection();
+                // A cached jar file is shared with the class loader and must not be closed here
+                connection.setUseCaches(false);
+                try (JarFile jarFile = connection.getJarFile()) {
+                    for (JarEntry entry : jarFile.stream().toList()) {
+                        String name = entry.getName();
+                        if (name.startsWith(SCHEMA_DIRECTORY) && name.endsWith(SCHEMA_EXTENSION) && name.indexOf('/', SCHEMA_DIRECTORY.length()) < 0) {
+                            schemaFiles.add(URI.create("jar:" + connection.getJarFileURL() + "!/" + name).toURL());
+                        }
+                    }
+                }
+            }
+            default -> Log.warnf("Unsupported location %s of schema directory", directory);
+        }
+        return schemaFiles;
     }
 
-    private void loadSchema(String schemaFile, ClassLoader classLoader) {
+    private void addSchemaFile(URL schemaFile) {
+        String path = schemaFile.getPath();
+        String fileName = path.substring(path.lastIndexOf('/') + 1);
+        String version = normalize(extractVersion(fileName));
+        URL previous = version2SchemaFile.putIfAbsent(version, schemaFile);
+        if (previous != null) {
+            Log.warnf("Ignoring schema file %s, version %s is already provided by %s", schemaFile, version, previous);
+        }
+    }
+
+    private void loadSchemas() {
+        Log.infof("***** Loading schemas of versions %s *****", version2SchemaFile.keySet());
+        List<String> eagerVersions = version2SchemaFile.keySet().stream()
+                .filter(version -> !lazyVersions.contains(version))
+                .toList();
+        if (eagerVersions.isEmpty()) return;
+
+        long start = System.nanoTime();
+        // Compilation is CPU bound, so there is no point in more threads than processors
+        int threads = Math.min(eagerVersions.size(), Runtime.getRuntime().availableProcessors());
+        try (ExecutorService executorService = Executors.newFixedThreadPool(threads)) {
+            for (String version : eagerVersions) {
+                version2Schema.put(version, CompletableFuture.supplyAsync(() -> compileSchema(version), executorService));
+            }
+        }
+        Log.infof("Loaded %d schemas in %d ms", eagerVersions.size(), Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private Optional<Schema> compileSchema(String version) {
+        URL schemaFile = version2SchemaFile.get(version);
         Log.debugf("Loading schema file %s", schemaFile);
-        try (InputStream schemaStream = classLoader.getResourceAsStream(SCHEMA_DIRECTORY + schemaFile)) {
-            String version = normalize(extractVersion(schemaFile));
+        long start = System.nanoTime();
+        try (InputStream schemaStream = schemaFile.openStream()) {
             Schema schema = xmlUtilityService.createSchema(schemaStream);
-            version2Schema.put(version, schema);
+            Duration duration = Duration.ofNanos(System.nanoTime() - start);
+            meterRegistry.timer("comint.schema.compilation", "version", version).record(duration);
+            Log.infof("Compiled schema version %s in %d ms", version, duration.toMillis());
+            return Optional.of(schema);
         } catch (IOException | SAXException e) {
             Log.errorf(e, "Error loading schema file %s", schemaFile);
+            return Optional.empty();
         }
     }
 
-    private String extractVersion(String filename) {
+    private static String extractVersion(String filename) {
         int lastUnderscore = filename.lastIndexOf('_');
-        return filename.substring(lastUnderscore + 1, filename.length() - 4);
+        return filename.substring(lastUnderscore + 1, filename.length() - SCHEMA_EXTENSION.length());
     }
 
-    private String normalize(String version) {
+    private static String normalize(String version) {
         return version.endsWith(".0") ? normalize(version.substring(0, version.length() - 2)) : version;
     }
 
+    /**
+     * A lazy version is compiled by its first caller. Callers of that version wait for it, callers of other versions
+     * are not held up.
+     */
     public Optional<Schema> getSchema(String version) {
-        return Optional.ofNullable(version2Schema.get(normalize(version)));
+        String normalizedVersion = normalize(version);
+        CompletableFuture<Optional<Schema>> schema = version2Schema.get(normalizedVersion);
+        if (schema == null) {
+            if (!version2SchemaFile.containsKey(normalizedVersion)) return Optional.empty();
+            CompletableFuture<Optional<Schema>> compilation = new CompletableFuture<>();
+            schema = version2Schema.putIfAbsent(normalizedVersion, compilation);
+            if (schema == null) {
+                schema = compilation;
+                try {
+                    compilation.complete(compileSchema(normalizedVersion));
+                } catch (RuntimeException e) {
+                    compilation.completeExceptionally(e);
+                }
+            }
+        }
+        return schema.join();
     }
 }
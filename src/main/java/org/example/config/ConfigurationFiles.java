@@ -0,0 +1,68 @@
+package org.example.config;
+
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.util.CsvFileReader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads the CSV configuration files from {@code comint.config-directory}, falling back to the copies on the classpath
+ * for files the directory does not contain. Remembers when each file was read, so changes can be detected.
+ */
+@ApplicationScoped
+public class ConfigurationFiles {
+
+    private final Optional<Path> configDirectory;
+    private final Map<String, FileTime> readModificationTimes = new ConcurrentHashMap<>();
+
+    public ConfigurationFiles(@ConfigProperty(name = "comint.config-directory") Optional<String> configDirectory) {
+        this.configDirectory = configDirectory.map(Path::of);
+    }
+
+    public <T> List<T> read(String fileName, Class<T> type) {
+        Optional<Path> file = find(fileName);
+        if (file.isEmpty()) return CsvFileReader.readFile(fileName, type);
+        try {
+            return reread(fileName, type);
+        } catch (IOException e) {
+            Log.errorf("Failed to read %s: %s", file.get(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Reads a file of the configuration directory again, throwing instead of returning an empty list on failure.
+     */
+    public <T> List<T> reread(String fileName, Class<T> type) throws IOException {
+        Path file = find(fileName).orElseThrow(() -> new IOException(fileName + " not found in configuration directory"));
+        // Taken before reading, so a change while the file is read is picked up by the next check
+        readModificationTimes.put(fileName, Files.getLastModifiedTime(file));
+        return CsvFileReader.readFile(file, type);
+    }
+
+    /**
+     * A file that disappeared does not count as changed, the configuration read last stays in place.
+     */
+    public boolean hasChanged(String fileName) {
+        Optional<Path> file = find(fileName);
+        if (file.isEmpty()) return false;
+        try {
+            return !Files.getLastModifiedTime(file.get()).equals(readModificationTimes.get(fileName));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private Optional<Path> find(String fileName) {
+        return configDirectory.map(directory -> directory.resolve(fileName)).filter(Files::isRegularFile);
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.config;
+
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.example.host.Host;
+import org.example.host.HostService;
+import org.example.routing.Route;
+import org.example.routing.RoutingService;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reloads hosts and routes when their files in the configuration directory change. A file that fails to parse leaves
+ * the running configuration untouched.
+ */
+@ApplicationScoped
+public class ConfigurationWatcher {
+
+    private final ConfigurationFiles configurationFiles;
+    private final HostService hostService;
+    private final RoutingService routingService;
+
+    public ConfigurationWatcher(ConfigurationFiles configurationFiles, HostService hostService, RoutingService routingService) {
+        this.configurationFiles = configurationFiles;
+        this.hostService = hostService;
+        this.routingService = routingService;
+    }
+
+    @Scheduled(every = "${comint.config-reload-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void reloadChangedFiles() {
+        if (configurationFiles.hasChanged(HostService.HOSTS_FILE)) reloadHosts();
+        if (configurationFiles.hasChanged(RoutingService.ROUTING_FILE)) reloadRoutes();
+    }
+
+    public void reloadHosts() {
+        try {
+            List<Host> hosts = configurationFiles.reread(HostService.HOSTS_FILE, Host.class);
+            hostService.reload(hosts);
+            // Cached resolutions and bindings may point to hosts that were replaced or removed
+            routingService.refresh();
+        } catch (IOException e) {
+            Log.errorf("Failed to reload hosts, keeping the current ones: %s", e.getMessage());
+        }
+    }
+
+    public void reloadRoutes() {
+        try {
+            routingService.reload(configurationFiles.reread(RoutingService.ROUTING_FILE, Route.class));
+        } catch (IOException e) {
+            Log.errorf("Failed to reload routes, keeping the current ones: %s", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.deduplication;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.w3c.dom.Node;
+
+import java.time.Duration;
+
+/**
+ * Recognizes messages that partner LIs resend after a timeout, by message identifier and payload. A message only
+ * counts as seen once it was enqueued, so a copy of a message that failed to enqueue is processed again.
+ */
+@ApplicationScoped
+public class DuplicateMessageFilter {
+
+    private final boolean enabled;
+    private final ExpiringFingerprintSet fingerprints;
+    private final Counter hits;
+    private final Counter misses;
+
+    public DuplicateMessageFilter(
+            MeterRegistry meterRegistry,
+            @ConfigProperty(name = "comint.deduplication.enabled", defaultValue = "true") boolean enabled,
+            @ConfigProperty(name = "comint.deduplication.window", defaultValue = "10m") Duration window,
+            @ConfigProperty(name = "comint.deduplication.max-entries", defaultValue = "100000") int maxEntries
+    ) {
+        this.enabled = enabled;
+        this.fingerprints = new ExpiringFingerprintSet(window.toNanos(), maxEntries, System::nanoTime);
+        this.hits = meterRegistry.counter("comint.deduplication", "result", "hit");
+        this.misses = meterRegistry.counter("comint.deduplication", "result", "miss");
+        meterRegistry.gauge("comint.deduplication.entries", fingerprints, ExpiringFingerprintSet::size);
+    }
+
+    /**
+     * Messages without an identifier are never deduplicated, identical bodies alone may well be distinct messages.
+     *
+     * @return The fingerprint to pass to {@link #markEnqueued(Long)} once the message is enqueued, or null if the
+     * message is not deduplicated
+     */
+    public Long fingerprint(String messageIdentifier, Node payload) {
+        if (!enabled || messageIdentifier == null) return null;
+        return MessageFingerprint.of(messageIdentifier, payload);
+    }
+
+    /**
+     * Two copies arriving at the same time may both pass, a copy only counts as seen once the first one is enqueued.
+     */
+    public boolean isDuplicate(Long fingerprint) {
+        if (fingerprint == null) return false;
+        boolean duplicate = fingerprints.contains(fingerprint);
+        (duplicate ? hits : misses).increment();
+        if (duplicate) Log.info("Message is a duplicate of an already enqueued message");
+        return duplicate;
+    }
+
+    public void markEnqueued(Long fingerprint) {
+        if (fingerprint != null) fingerprints.add(fingerprint);
+    }
+}
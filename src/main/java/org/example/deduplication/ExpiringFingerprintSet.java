@@ -0,0 +1,131 @@
+package org.example.deduplication;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * A set of 64-bit fingerprints that forgets them again, kept as two generations of primitive hash tables. A
+ * fingerprint is remembered for at least one window and at most two. The memory is fixed by {@code maxEntries}: a
+ * generation that fills up early is retired early, which only shortens the window under overload.
+ */
+public class ExpiringFingerprintSet {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final long windowNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+    private LongHashSet current;
+    private LongHashSet previous;
+    private long generationStart;
+
+    public ExpiringFingerprintSet(long windowNanos, int maxEntries, LongSupplier nanoClock) {
+        this.windowNanos = windowNanos;
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+        this.current = new LongHashSet(maxEntries);
+        this.previous = new LongHashSet(maxEntries);
+        this.generationStart = nanoClock.getAsLong();
+    }
+
+    public boolean contains(long fingerprint) {
+        lock.lock();
+        try {
+            expire();
+            return current.contains(fingerprint) || previous.contains(fingerprint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void add(long fingerprint) {
+        lock.lock();
+        try {
+            expire();
+            if (current.size() >= maxEntries) rotate(nanoClock.getAsLong());
+            current.add(fingerprint);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return current.size() + previous.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void expire() {
+        long now = nanoClock.getAsLong();
+        long age = now - generationStart;
+        if (age < windowNanos) return;
+        rotate(now);
+        // Nothing was added during the whole last window, so the retired generation is already outdated as well
+        if (age >= 2 * windowNanos) previous.clear();
+    }
+
+    /**
+     * Reuses the tables of the oldest generation instead of allocating new ones.
+     */
+    private void rotate(long now) {
+        LongHashSet retired = previous;
+        previous = current;
+        current = retired;
+        current.clear();
+        generationStart = now;
+    }
+
+    /**
+     * Open addressing with linear probing over a table at most half full, with 0 marking a free slot.
+     */
+    private static final class LongHashSet {
+
+        private static final long ZERO_REPLACEMENT = 0x9E3779B97F4A7C15L;
+
+        private final long[] table;
+        private final int mask;
+        private int size;
+
+        private LongHashSet(int maxEntries) {
+            int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+            table = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        private boolean contains(long value) {
+            long key = value == 0 ? ZERO_REPLACEMENT : value;
+            for (int index = index(key); table[index] != 0; index = (index + 1) & mask) {
+                if (table[index] == key) return true;
+            }
+            return false;
+        }
+
+        private void add(long value) {
+            long key = value == 0 ? ZERO_REPLACEMENT : value;
+            int index = index(key);
+            while (table[index] != 0) {
+                if (table[index] == key) return;
+                index = (index + 1) & mask;
+            }
+            table[index] = key;
+            size++;
+        }
+
+        private int index(long key) {
+            return (int) (key ^ (key >>> 32)) & mask;
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private void clear() {
+            if (size == 0) return;
+            Arrays.fill(table, 0);
+            size = 0;
+        }
+    }
+}
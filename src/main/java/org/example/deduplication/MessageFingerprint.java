@@ -0,0 +1,79 @@
+package org.example.deduplication;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A 64-bit fingerprint of a message identifier and the content of a DOM payload, computed by walking the tree so the
+ * payload does not have to be serialized first. Names, namespaces, attributes and text all contribute.
+ */
+public final class MessageFingerprint {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private long hash = FNV_OFFSET_BASIS;
+
+    private MessageFingerprint() {
+    }
+
+    public static long of(String messageIdentifier, Node payload) {
+        MessageFingerprint fingerprint = new MessageFingerprint();
+        fingerprint.update(messageIdentifier);
+        fingerprint.update(payload);
+        return fingerprint.finish();
+    }
+
+    private void update(Node node) {
+        update(node.getNodeType());
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE -> {
+                update(node.getNamespaceURI());
+                update(node.getLocalName() != null ? node.getLocalName() : node.getNodeName());
+                NamedNodeMap attributes = node.getAttributes();
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    Node attribute = attributes.item(i);
+                    update(attribute.getNamespaceURI());
+                    update(attribute.getNodeName());
+                    update(attribute.getNodeValue());
+                }
+                for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                    update(child);
+                }
+                // Closes the element, so content cannot shift between siblings and children unnoticed
+                update(-1);
+            }
+            case Node.TEXT_NODE, Node.CDATA_SECTION_NODE -> update(node.getNodeValue());
+            default -> {
+            }
+        }
+    }
+
+    private void update(String value) {
+        if (value == null) {
+            update(-2);
+            return;
+        }
+        update(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            update(value.charAt(i));
+        }
+    }
+
+    private void update(int value) {
+        hash = (hash ^ value) * FNV_PRIME;
+    }
+
+    /**
+     * The murmur3 finalizer, which spreads the FNV state over all bits.
+     */
+    private long finish() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93e185a82a5L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -6,15 +6,15 @@ import jakarta.inject.Inject;
 import org.example.heartbeat.HeartbeatSender;
 
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ApplicationScoped
 public class HeartbeatScheduler {
 
     private final HostStateService hostStateService;
     private final HeartbeatSender heartbeatSender;
-    private final Map<Host, Instant> lastHeartbeats = new HashMap<>();
+    private final Map<HostRuntime, Instant> lastHeartbeats = new ConcurrentHashMap<>();
 
     @Inject
     public HeartbeatScheduler(HostStateService hostStateService, HeartbeatSender heartbeatSender) {
@@ -22,31 +22,43 @@ public class HeartbeatScheduler {
         this.heartbeatSender = heartbeatSender;
     }
 
-    public void scheduleHeartbeat(Host host) {
-        lastHeartbeats.put(host, Instant.MIN);
+    public void scheduleHeartbeat(HostRuntime runtime) {
+        lastHeartbeats.put(runtime, Instant.MIN);
     }
 
+    public void cancelHeartbeat(HostRuntime runtime) {
+        lastHeartbeats.remove(runtime);
+    }
+
+    /**
+     * A heartbeat is only claimed by replacing the time of the previous one, so a runtime cancelled in between is
+     * neither sent a heartbeat nor scheduled again.
+     */
     @Scheduled(every = "1s")
     void checkAndSendHeartbeats() {
-        lastHeartbeats.keySet().stream()
-                .filter(this::shouldSendHeartbeat)
-                .forEach(this::processHeartbeat);
+        for (Map.Entry<HostRuntime, Instant> entry : lastHeartbeats.entrySet()) {
+            HostRuntime runtime = entry.getKey();
+            Instant lastHeartbeat = entry.getValue();
+            if (runtime.isRetired() || !shouldSendHeartbeat(runtime, lastHeartbeat)) continue;
+            if (lastHeartbeats.replace(runtime, lastHeartbeat, Instant.now())) {
+                processHeartbeat(runtime);
+            }
+        }
     }
 
-    private boolean shouldSendHeartbeat(Host host) {
-        return lastHeartbeats.get(host)
-                .plusSeconds(host.getHeartbeatInterval())
+    private boolean shouldSendHeartbeat(HostRuntime runtime, Instant lastHeartbeat) {
+        return lastHeartbeat
+                .plusSeconds(runtime.host().getHeartbeatInterval())
                 .isBefore(Instant.now());
     }
 
-    private void processHeartbeat(Host host) {
-        lastHeartbeats.put(host, Instant.now());
-        boolean success = heartbeatSender.sendHeartbeat(host);
+    private void processHeartbeat(HostRuntime runtime) {
+        boolean success = heartbeatSender.sendHeartbeat(runtime.host());
 
         if (success) {
-            hostStateService.heartbeatSuccess(host);
+            hostStateService.heartbeatSuccess(runtime);
         } else {
-            hostStateService.heartbeatFailure(host);
+            hostStateService.heartbeatFailure(runtime);
         }
     }
 }
@@ -2,6 +2,8 @@ package org.example.host;
 
 import com.opencsv.bean.CsvBindByName;
 
+import java.util.Objects;
+
 public class Host {
 
     @CsvBindByName
@@ -19,6 +21,27 @@ public class Host {
     @CsvBindByName
     private int heartbeatInterval;
 
+    @CsvBindByName
+    private Integer prefetchCount;
+
+    @CsvBindByName
+    private String queueType;
+
+    @CsvBindByName
+    private Long maxLength;
+
+    @CsvBindByName
+    private Long maxLengthBytes;
+
+    @CsvBindByName
+    private String overflow;
+
+    @CsvBindByName
+    private Boolean lazy;
+
+    @CsvBindByName
+    private String streamOffset;
+
     public String getName() {
         return name;
     }
@@ -59,8 +82,82 @@ public class Host {
         this.heartbeatInterval = heartbeatInterval;
     }
 
+    public Integer getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public void setPrefetchCount(Integer prefetchCount) {
+        this.prefetchCount = prefetchCount;
+    }
+
+    public String getQueueType() {
+        return queueType;
+    }
+
+    public void setQueueType(String queueType) {
+        this.queueType = queueType;
+    }
+
+    public Long getMaxLength() {
+        return maxLength;
+    }
+
+    public void setMaxLength(Long maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public Long getMaxLengthBytes() {
+        return maxLengthBytes;
+    }
+
+    public void setMaxLengthBytes(Long maxLengthBytes) {
+        this.maxLengthBytes = maxLengthBytes;
+    }
+
+    public String getOverflow() {
+        return overflow;
+    }
+
+    public void setOverflow(String overflow) {
+        this.overflow = overflow;
+    }
+
+    public Boolean getLazy() {
+        return lazy;
+    }
+
+    public void setLazy(Boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public String getStreamOffset() {
+        return streamOffset;
+    }
+
+    public void setStreamOffset(String streamOffset) {
+        this.streamOffset = streamOffset;
+    }
+
+    /**
+     * Whether both hosts are configured alike, which a reload uses to keep hosts running that did not change.
+     */
+    public boolean hasSameSettings(Host other) {
+        return Objects.equals(name, other.name)
+                && Objects.equals(url, other.url)
+                && Objects.equals(messagingEndpoint, other.messagingEndpoint)
+                && Objects.equals(heartbeatEndpoint, other.heartbeatEndpoint)
+                && heartbeatInterval == other.heartbeatInterval
+                && Objects.equals(prefetchCount, other.prefetchCount)
+                && Objects.equals(queueType, other.queueType)
+                && Objects.equals(maxLength, other.maxLength)
+                && Objects.equals(maxLengthBytes, other.maxLengthBytes)
+                && Objects.equals(overflow, other.overflow)
+                && Objects.equals(lazy, other.lazy)
+                && Objects.equals(streamOffset, other.streamOffset);
+    }
+
     @Override
     public String toString() {
-        return "Host{name=" + name + ", url=" + url + ", messagingEndpoint=" + messagingEndpoint + ", heartbeatEndpoint=" + heartbeatEndpoint + ", heartbeatInterval=" + heartbeatInterval + '}';
+        return "Host{name=" + name + ", url=" + url + ", messagingEndpoint=" + messagingEndpoint + ", heartbeatEndpoint=" + heartbeatEndpoint + ", heartbeatInterval=" + heartbeatInterval + ", prefetchCount=" + prefetchCount + ", queueType=" + queueType + ", maxLength=" + maxLength + ", maxLengthBytes=" + maxLengthBytes + ", overflow=" + overflow + ", lazy=" + lazy + ", streamOffset=" + streamOffset + '}';
     }
 }
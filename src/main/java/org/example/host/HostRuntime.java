@@ -0,0 +1,132 @@
+package org.example.host;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.example.inbound.InboundMessageSender;
+import org.example.messaging.UICMessageSender;
+import org.example.util.MessageTypeTags;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Everything a delivery to a host needs, resolved once when the host is started: the endpoint with its clients, the
+ * current state and the meters of the host. Created and retired by {@link HostRuntimeRegistry}.
+ */
+public final class HostRuntime {
+
+    private final Host host;
+    private final UICMessageSender.Client uicClient;
+    private final InboundMessageSender.Client inboundClient;
+    private final AtomicReference<HostState> state = new AtomicReference<>(HostState.ACTIVE);
+    private final AtomicReference<String> consumerTag = new AtomicReference<>();
+    private final MeterRegistry meterRegistry;
+    private final MessageTypeTags messageTypeTags;
+    private final Timer deliveryTimer;
+    // Keyed by message type tag, so only the counters of a delivery are looked up and their number stays bounded
+    private final Map<String, Counter[]> deliveryCounters = new ConcurrentHashMap<>();
+    private volatile boolean retired;
+    private volatile boolean metersRemoved;
+
+    HostRuntime(Host host, MeterRegistry meterRegistry, MessageTypeTags messageTypeTags) {
+        this.host = host;
+        String endpoint = host.getUrl() + host.getMessagingEndpoint();
+        this.uicClient = new UICMessageSender.Client(endpoint);
+        this.inboundClient = new InboundMessageSender.Client(endpoint);
+        this.meterRegistry = meterRegistry;
+        this.messageTypeTags = messageTypeTags;
+        this.deliveryTimer = Timer.builder("comint.delivery.duration")
+                .tag("host", host.getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    public Host host() {
+        return host;
+    }
+
+    public String name() {
+        return host.getName();
+    }
+
+    public UICMessageSender.Client uicClient() {
+        return uicClient;
+    }
+
+    public InboundMessageSender.Client inboundClient() {
+        return inboundClient;
+    }
+
+    public HostState state() {
+        return state.get();
+    }
+
+    boolean updateState(HostState expected, HostState next) {
+        return state.compareAndSet(expected, next);
+    }
+
+    /**
+     * Claims the consumer of the host, fails if the host already has one.
+     */
+    public boolean setConsumerTag(String tag) {
+        return consumerTag.compareAndSet(null, tag);
+    }
+
+    /**
+     * Releases the consumer of the host and returns its tag, if it still is the given one, or any with {@code null}.
+     */
+    public String clearConsumerTag(String tag) {
+        if (tag == null) return consumerTag.getAndSet(null);
+        return consumerTag.compareAndSet(tag, null) ? tag : null;
+    }
+
+    public boolean isRetired() {
+        return retired;
+    }
+
+    void retire() {
+        retired = true;
+    }
+
+    public Timer deliveryTimer() {
+        return deliveryTimer;
+    }
+
+    public void recordDelivery(String messageType, DeliveryOutcome outcome) {
+        if (metersRemoved) return;
+        deliveryCounters.computeIfAbsent(messageTypeTags.tag(messageType), this::registerCounters)[outcome.ordinal()].increment();
+    }
+
+    /**
+     * The meters are shared with a newer runtime of the same host name, so they are only removed once the host is gone.
+     * Deliveries still in flight are no longer counted after that.
+     */
+    void removeMeters() {
+        metersRemoved = true;
+        meterRegistry.remove(deliveryTimer);
+        // Also those an earlier runtime of the host registered for message types this one has not seen
+        meterRegistry.find("comint.deliveries").tag("host", host.getName()).meters().forEach(meterRegistry::remove);
+    }
+
+    private Counter[] registerCounters(String messageType) {
+        DeliveryOutcome[] outcomes = DeliveryOutcome.values();
+        Counter[] counters = new Counter[outcomes.length];
+        for (DeliveryOutcome outcome : outcomes) {
+            counters[outcome.ordinal()] = meterRegistry.counter("comint.deliveries",
+                    "host", host.getName(),
+                    "messageType", messageType,
+                    "outcome", outcome.name().toLowerCase(Locale.ROOT)
+            );
+        }
+        return counters;
+    }
+
+    public enum DeliveryOutcome {
+        DELIVERED,
+        RETRIED,
+        REJECTED
+    }
+}
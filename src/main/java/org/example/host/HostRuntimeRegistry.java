@@ -0,0 +1,70 @@
+package org.example.host;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.example.util.MessageTypeTags;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The {@link HostRuntime} of every started host, by host name and by the tag of its current consumer.
+ */
+@ApplicationScoped
+public class HostRuntimeRegistry {
+
+    private final MeterRegistry meterRegistry;
+    private final MessageTypeTags messageTypeTags;
+    private final Map<String, HostRuntime> runtimesByName = new ConcurrentHashMap<>();
+    private final Map<String, HostRuntime> runtimesByConsumerTag = new ConcurrentHashMap<>();
+
+    public HostRuntimeRegistry(MeterRegistry meterRegistry, MessageTypeTags messageTypeTags) {
+        this.meterRegistry = meterRegistry;
+        this.messageTypeTags = messageTypeTags;
+    }
+
+    /**
+     * Replaces the runtime of an earlier host of the same name, which is expected to be retired already.
+     */
+    public HostRuntime register(Host host) {
+        HostRuntime runtime = new HostRuntime(host, meterRegistry, messageTypeTags);
+        HostRuntime previous = runtimesByName.put(host.getName(), runtime);
+        if (previous != null) previous.retire();
+        return runtime;
+    }
+
+    /**
+     * Retires the runtime of this very host and removes its meters. A runtime registered for a newer host of the same
+     * name stays, along with the meters it shares.
+     */
+    public void retire(Host host) {
+        HostRuntime runtime = get(host);
+        if (runtime == null) return;
+        runtime.retire();
+        if (runtimesByName.remove(host.getName(), runtime)) runtime.removeMeters();
+    }
+
+    public HostRuntime get(String name) {
+        return runtimesByName.get(name);
+    }
+
+    /**
+     * @return The runtime of this very host, {@code null} if it was retired or replaced
+     */
+    public HostRuntime get(Host host) {
+        HostRuntime runtime = runtimesByName.get(host.getName());
+        return runtime != null && runtime.host() == host ? runtime : null;
+    }
+
+    public void bindConsumerTag(String consumerTag, HostRuntime runtime) {
+        runtimesByConsumerTag.put(consumerTag, runtime);
+    }
+
+    public HostRuntime getByConsumerTag(String consumerTag) {
+        return runtimesByConsumerTag.get(consumerTag);
+    }
+
+    public HostRuntime unbindConsumerTag(String consumerTag) {
+        return runtimesByConsumerTag.remove(consumerTag);
+    }
+}
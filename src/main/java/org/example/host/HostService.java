@@ -5,34 +5,49 @@ import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.example.config.ConfigurationFiles;
 import org.example.logging.MdcKeys;
 import org.example.rabbitmq.HostQueueConsumer;
-import org.example.util.CsvFileReader;
+import org.example.rabbitmq.QueueArguments;
+import org.example.rabbitmq.RabbitMQService;
 import org.jboss.logmanager.MDC;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Startup
 @ApplicationScoped
 public class HostService {
 
-    private static final String HOSTS_FILE = "hosts.csv";
+    public static final String HOSTS_FILE = "hosts.csv";
 
-    private final HostStateService hostStateService;
+    private final ConfigurationFiles configurationFiles;
+    private final HostRuntimeRegistry hostRuntimeRegistry;
     private final HostQueueConsumer hostQueueConsumer;
     private final HeartbeatScheduler heartbeatScheduler;
-    private final List<Host> hosts = CsvFileReader.readFile(HOSTS_FILE, Host.class);
+    private final RabbitMQService rabbitMQService;
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    // Replaced as a whole on reload and never modified, so lookups need no lock
+    private volatile Map<String, Host> hostsByName = Map.of();
 
     @Inject
     public HostService(
-            HostStateService hostStateService,
+            ConfigurationFiles configurationFiles,
+            HostRuntimeRegistry hostRuntimeRegistry,
             HostQueueConsumer hostQueueConsumer,
-            HeartbeatScheduler heartbeatScheduler
+            HeartbeatScheduler heartbeatScheduler,
+            RabbitMQService rabbitMQService
     ) {
-        this.hostStateService = hostStateService;
+        this.configurationFiles = configurationFiles;
+        this.hostRuntimeRegistry = hostRuntimeRegistry;
         this.hostQueueConsumer = hostQueueConsumer;
         this.heartbeatScheduler = heartbeatScheduler;
+        this.rabbitMQService = rabbitMQService;
     }
 
     @PostConstruct
@@ -42,18 +57,105 @@ public class HostService {
 
     private void initializeHosts() {
         Log.info("***** Initializing hosts *****");
-        hosts.forEach(this::initializeHost);
+        Map<String, Host> hosts = indexByName(configurationFiles.read(HOSTS_FILE, Host.class));
+        hosts.values().forEach(this::initializeHost);
+        hostsByName = hosts;
     }
 
     private void initializeHost(Host host) {
         MDC.put(MdcKeys.HOST_NAME, host.getName());
         Log.info(host);
-        hostStateService.initializeHostState(host);
-        hostQueueConsumer.startConsuming(host);
-        if (host.getHeartbeatInterval() != 0) heartbeatScheduler.scheduleHeartbeat(host);
+        boolean stream = QueueArguments.queueType(host) == QueueArguments.QueueType.STREAM;
+        if (stream && host.getHeartbeatInterval() == 0) {
+            throw new IllegalArgumentException("Stream queue of host " + host.getName() + " needs a heartbeat to resume after a failed delivery");
+        }
+        HostRuntime runtime = hostRuntimeRegistry.register(host);
+        rabbitMQService.declareQueue(host.getName(), QueueArguments.forHost(host));
+        // Retry copies would be dead-lettered into a stream as second entries
+        if (!stream) rabbitMQService.declareRetryQueues(host.getName());
+        hostQueueConsumer.startConsuming(runtime);
+        if (host.getHeartbeatInterval() != 0) heartbeatScheduler.scheduleHeartbeat(runtime);
+    }
+
+    /**
+     * Stops consuming and closes the channel of the host, the queue and the messages in it are left in place.
+     * The runtime is retired before, so deliveries still waiting to be sent go back to the queue.
+     */
+    private void retireHost(Host host) {
+        MDC.put(MdcKeys.HOST_NAME, host.getName());
+        Log.infof("Retiring host %s", host.getName());
+        HostRuntime runtime = hostRuntimeRegistry.get(host);
+        if (runtime == null) return;
+        try {
+            hostQueueConsumer.stopConsuming(runtime);
+        } catch (RuntimeException e) {
+            Log.errorf("Failed to stop consumer of host %s: %s", host.getName(), e.getMessage());
+        }
+        heartbeatScheduler.cancelHeartbeat(runtime);
+        hostRuntimeRegistry.retire(host);
+        rabbitMQService.releaseHost(host.getName());
+    }
+
+    private boolean startHost(Host host) {
+        try {
+            initializeHost(host);
+            return true;
+        } catch (RuntimeException e) {
+            Log.errorf("Failed to initialize host %s: %s", host.getName(), e.getMessage());
+            retireHost(host);
+            return false;
+        }
+    }
+
+    /**
+     * Applies a new host list incrementally. Unchanged hosts keep running, added hosts are started before they become
+     * visible and removed hosts are stopped after. A changed host is restarted with its new settings, or keeps its
+     * previous settings if they cannot be applied, for instance because the broker refuses new queue arguments.
+     */
+    public void reload(List<Host> hosts) {
+        reloadLock.lock();
+        try {
+            Map<String, Host> current = hostsByName;
+            Map<String, Host> updated = indexByName(hosts);
+            Map<String, Host> next = new LinkedHashMap<>();
+            for (Host host : updated.values()) {
+                Host existing = current.get(host.getName());
+                if (existing != null && existing.hasSameSettings(host)) {
+                    next.put(host.getName(), existing);
+                    continue;
+                }
+                if (existing != null) retireHost(existing);
+                if (startHost(host)) {
+                    next.put(host.getName(), host);
+                } else if (existing != null && startHost(existing)) {
+                    next.put(existing.getName(), existing);
+                }
+            }
+
+            List<Host> removed = new ArrayList<>();
+            current.values().stream().filter(host -> !updated.containsKey(host.getName())).forEach(removed::add);
+            hostsByName = Collections.unmodifiableMap(next);
+            removed.forEach(this::retireHost);
+            Log.infof("Reloaded hosts, %d active, %d removed", next.size(), removed.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * The first host of a name wins, later duplicates are ignored.
+     */
+    private static Map<String, Host> indexByName(List<Host> hosts) {
+        Map<String, Host> hostsByName = new LinkedHashMap<>();
+        for (Host host : hosts) {
+            if (hostsByName.putIfAbsent(host.getName(), host) != null) {
+                Log.warnf("Ignoring duplicate host %s", host.getName());
+            }
+        }
+        return Collections.unmodifiableMap(hostsByName);
     }
 
     public Optional<Host> getHost(String name) {
-        return hosts.stream().filter(host -> host.getName().equals(name)).findFirst();
+        return Optional.ofNullable(hostsByName.get(name));
     }
 }
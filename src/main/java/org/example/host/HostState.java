@@ -0,0 +1,11 @@
+package org.example.host;
+
+public enum HostState {
+    ACTIVE,
+    INACTIVE,
+    ABANDONED;
+
+    public boolean isHealthy() {
+        return this == ACTIVE;
+    }
+}
@@ -0,0 +1,11 @@
+package org.example.host;
+
+/**
+ * Fired synchronously whenever the state of a host actually changes.
+ */
+public record HostStateChangedEvent(HostRuntime runtime, HostState previous, HostState current) {
+
+    public Host host() {
+        return runtime.host();
+    }
+}
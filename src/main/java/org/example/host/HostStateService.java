@@ -2,75 +2,51 @@ package org.example.host;
 
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 
-import java.util.HashMap;
-import java.util.Map;
-
+/**
+ * Moves hosts between their states. The state is kept in the {@link HostRuntime} of the host, each transition only
+ * applies from the state it expects, so concurrent heartbeats and deliveries cannot skip a state.
+ */
 @ApplicationScoped
 public class HostStateService {
 
-    private final Map<Host, HostState> hostStates = new HashMap<>();
-
-    public void initializeHostState(Host host) {
-        hostStates.put(host, HostState.ACTIVE);
-    }
-
-    public void heartbeatSuccess(Host host) {
-        if (isInactive(host) || isAbandoned(host)) {
-            updateToActive(host);
-        }
-    }
+    private final Event<HostStateChangedEvent> hostStateChanged;
 
-    public void heartbeatFailure(Host host) {
-        if (isActive(host)) {
-            updateToInactive(host);
-        }
+    public HostStateService(Event<HostStateChangedEvent> hostStateChanged) {
+        this.hostStateChanged = hostStateChanged;
     }
 
-    public void messageDeliveryFailure(Host host) {
-        if (isInactive(host)) {
-            updateToAbandoned(host);
+    public void heartbeatSuccess(HostRuntime runtime) {
+        if (!updateHostState(runtime, HostState.INACTIVE, HostState.ACTIVE)) {
+            updateHostState(runtime, HostState.ABANDONED, HostState.ACTIVE);
         }
     }
 
-    private void updateToActive(Host host) {
-        updateHostState(host, HostState.ACTIVE);
-    }
-
-    private void updateToInactive(Host host) {
-        updateHostState(host, HostState.INACTIVE);
-    }
-
-    private void updateToAbandoned(Host host) {
-        updateHostState(host, HostState.ABANDONED);
-    }
-
-    private boolean isActive(Host host) {
-        return hostStates.get(host) == HostState.ACTIVE;
+    public void heartbeatFailure(HostRuntime runtime) {
+        updateHostState(runtime, HostState.ACTIVE, HostState.INACTIVE);
     }
 
-    private boolean isInactive(Host host) {
-        return hostStates.get(host) == HostState.INACTIVE;
+    public void messageDeliveryFailure(HostRuntime runtime) {
+        updateHostState(runtime, HostState.INACTIVE, HostState.ABANDONED);
     }
 
-    private boolean isAbandoned(Host host) {
-        return hostStates.get(host) == HostState.ABANDONED;
+    /**
+     * A stream has no retry queues to park a failed delivery in, so its host is taken down right away. Consumption
+     * resumes at the failed delivery with the next successful heartbeat.
+     */
+    public void streamDeliveryFailure(HostRuntime runtime) {
+        updateHostState(runtime, HostState.ACTIVE, HostState.INACTIVE);
     }
 
-    private void updateHostState(Host host, HostState hostState) {
-        if (hostStates.get(host) == null) {
-            Log.warn("Host was not initialized");
-            return;
-        }
-        HostState previous = hostStates.replace(host, hostState);
-        if (previous != hostState) {
-            Log.infof("Updated host state from %s to %s", previous, hostState);
+    private boolean updateHostState(HostRuntime runtime, HostState expected, HostState hostState) {
+        if (runtime.isRetired()) {
+            Log.warnf("Host %s was retired", runtime.name());
+            return false;
         }
-    }
-
-    private enum HostState {
-        ACTIVE,
-        INACTIVE,
-        ABANDONED
+        if (!runtime.updateState(expected, hostState)) return false;
+        Log.infof("Updated host state from %s to %s", expected, hostState);
+        hostStateChanged.fire(new HostStateChangedEvent(runtime, expected, hostState));
+        return true;
     }
 }
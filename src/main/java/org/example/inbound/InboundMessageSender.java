@@ -11,8 +11,6 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
 
 @ApplicationScoped
 public class InboundMessageSender {
@@ -21,15 +19,12 @@ public class InboundMessageSender {
     private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
     private static final String SUCCESS_MESSAGE = "success";
 
-    private final Map<String, InboundConnectorService> clientCache = new HashMap<>();
-
-    public void sendMessage(String endpoint, Document message) throws MessageSendException {
-        Log.debugf("Sending message to %s", endpoint);
-        InboundConnectorService client = getOrCreateClient(endpoint);
+    public void sendMessage(Client client, Document message) throws MessageSendException {
+        Log.debugf("Sending message to %s", client.endpoint());
 
         try {
             SendInboundMessage inboundMessage = createInboundMessage(message);
-            SendInboundMessageResponse response = client.sendInboundMessage(inboundMessage, "false");
+            SendInboundMessageResponse response = client.port().sendInboundMessage(inboundMessage, "false");
 
             String content = (response.getResponse() instanceof Element element)
                     ? element.getTextContent()
@@ -46,11 +41,7 @@ public class InboundMessageSender {
         }
     }
 
-    private InboundConnectorService getOrCreateClient(String endpoint) {
-        return clientCache.computeIfAbsent(endpoint, k -> createClient(endpoint));
-    }
-
-    private InboundConnectorService createClient(String endpoint) {
+    private static InboundConnectorService createPort(String endpoint) {
         InboundConnectorService client = INBOUND_SERVICE.getInboundConnectorServicePort();
         BindingProvider bindingProvider = (BindingProvider) client;
         bindingProvider.getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint);
@@ -62,4 +53,28 @@ public class InboundMessageSender {
         inboundMessage.setMessage(message.getDocumentElement());
         return inboundMessage;
     }
+
+    /**
+     * The client of one endpoint, created on first use and then reused.
+     */
+    public static final class Client {
+
+        private final String endpoint;
+        // Racing threads may both create a client, one of them is kept, which is harmless
+        private volatile InboundConnectorService port;
+
+        public Client(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String endpoint() {
+            return endpoint;
+        }
+
+        private InboundConnectorService port() {
+            InboundConnectorService current = port;
+            if (current == null) port = current = createPort(endpoint);
+            return current;
+        }
+    }
 }
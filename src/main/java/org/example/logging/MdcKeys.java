@@ -4,6 +4,8 @@ public class MdcKeys {
 
     public static final String MESSAGE_ID = "MessageId";
     public static final String HOST_NAME = "Host";
+    public static final String MESSAGE_TYPE = "MessageType";
+    public static final String SENDER = "Sender";
 
     private MdcKeys() {
     }
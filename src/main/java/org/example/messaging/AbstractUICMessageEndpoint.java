@@ -2,6 +2,9 @@ package org.example.messaging;
 
 import io.quarkus.logging.Log;
 import jakarta.jws.WebService;
+import org.example.MessageHeader;
+import org.example.MessageHeaderScanner;
+import org.example.deduplication.DuplicateMessageFilter;
 import org.example.host.Host;
 import org.example.logging.MdcKeys;
 import org.example.messaging.ack.LITechnicalAckBuilder;
@@ -16,15 +19,18 @@ public abstract class AbstractUICMessageEndpoint implements UICReceiveMessage {
 
     private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
 
+    private final DuplicateMessageFilter duplicateMessageFilter;
     private final LITechnicalAckBuilder liTechnicalAckBuilder;
     private final MessageValidator messageValidator;
     private final RoutingService routingService;
 
     public AbstractUICMessageEndpoint(
+            DuplicateMessageFilter duplicateMessageFilter,
             LITechnicalAckBuilder liTechnicalAckBuilder,
             MessageValidator messageValidator,
             RoutingService routingService
     ) {
+        this.duplicateMessageFilter = duplicateMessageFilter;
         this.liTechnicalAckBuilder = liTechnicalAckBuilder;
         this.messageValidator = messageValidator;
         this.routingService = routingService;
@@ -37,8 +43,14 @@ public abstract class AbstractUICMessageEndpoint implements UICReceiveMessage {
 
         try {
             Element message = (Element) parameters.getMessage();
-            messageValidator.validateMessage(message);
-            Element liTechnicalAck = processMessage(messageIdentifier, message);
+            MessageHeader messageHeader = MessageHeaderScanner.scan(message);
+            // A resent copy was already validated, routed and enqueued, so the partner only needs its ack again
+            Long fingerprint = duplicateMessageFilter.fingerprint(messageIdentifier, message);
+            if (duplicateMessageFilter.isDuplicate(fingerprint)) {
+                return createUICMessageResponse(liTechnicalAckBuilder.createAck(messageIdentifier, messageHeader));
+            }
+            messageValidator.validateMessage(message, messageHeader);
+            Element liTechnicalAck = processMessage(messageIdentifier, messageHeader, message, fingerprint);
             return createUICMessageResponse(liTechnicalAck);
         } catch (ClassCastException e) {
             Log.error("Message not an element node");
@@ -48,19 +60,27 @@ public abstract class AbstractUICMessageEndpoint implements UICReceiveMessage {
         }
     }
 
-    private Element processMessage(String messageIdentifier, Element message) {
-        Host host = routingService.findHost(message);
-        if (host == null) return liTechnicalAckBuilder.createNack(messageIdentifier, message);
+    private Element processMessage(String messageIdentifier, MessageHeader messageHeader, Element message, Long fingerprint) {
+        String queue = null;
+        if (!routingService.isRoutedByBroker()) {
+            Host host = routingService.findHost(messageHeader);
+            if (host == null) return liTechnicalAckBuilder.createNack(messageIdentifier, messageHeader);
+            queue = host.getName();
+        }
 
-        boolean success = sendMessage(host.getName(), messageIdentifier, message);
+        boolean success = sendMessage(queue, messageIdentifier, messageHeader, message);
         if (success) {
-            return liTechnicalAckBuilder.createAck(messageIdentifier, message);
+            duplicateMessageFilter.markEnqueued(fingerprint);
+            return liTechnicalAckBuilder.createAck(messageIdentifier, messageHeader);
         } else {
-            return liTechnicalAckBuilder.createNack(messageIdentifier, message);
+            return liTechnicalAckBuilder.createNack(messageIdentifier, messageHeader);
         }
     }
 
-    protected abstract boolean sendMessage(String queue, String messageIdentifier, Element message);
+    /**
+     * @param queue The host queue, or null when the broker routes the message
+     */
+    protected abstract boolean sendMessage(String queue, String messageIdentifier, MessageHeader messageHeader, Element message);
 
     private UICMessageResponse createUICMessageResponse(Element liTechnicalAck) {
         UICMessageResponse uicMessageResponse = OBJECT_FACTORY.createUICMessageResponse();
@@ -1,6 +1,8 @@
 package org.example.messaging;
 
 import jakarta.jws.WebService;
+import org.example.MessageHeader;
+import org.example.deduplication.DuplicateMessageFilter;
 import org.example.messaging.ack.LITechnicalAckBuilder;
 import org.example.rabbitmq.HostQueueProducer;
 import org.example.routing.RoutingService;
@@ -14,16 +16,17 @@ public class PassthroughEndpoint extends AbstractUICMessageEndpoint implements U
 
     public PassthroughEndpoint(
             HostQueueProducer hostQueueProducer,
+            DuplicateMessageFilter duplicateMessageFilter,
             LITechnicalAckBuilder liTechnicalAckBuilder,
             MessageValidator messageValidator,
             RoutingService routingService
     ) {
-        super(liTechnicalAckBuilder, messageValidator, routingService);
+        super(duplicateMessageFilter, liTechnicalAckBuilder, messageValidator, routingService);
         this.hostQueueProducer = hostQueueProducer;
     }
 
     @Override
-    protected boolean sendMessage(String queue, String messageIdentifier, Element message) {
-        return hostQueueProducer.sendUICMessage(queue, messageIdentifier, message);
+    protected boolean sendMessage(String queue, String messageIdentifier, MessageHeader messageHeader, Element message) {
+        return hostQueueProducer.sendUICMessage(queue, messageIdentifier, messageHeader, message);
     }
 }
@@ -0,0 +1,137 @@
+package org.example.messaging;
+
+import org.apache.cxf.staxutils.StaxUtils;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.transform.Source;
+import javax.xml.transform.stax.StAXSource;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the SOAP body payload of a UICMessage request as a stream over a stored message, without a DOM.
+ * The stored message is wrapped into the UICMessage element, and its root element becomes the unqualified
+ * {@code message} element the operation expects, the same way JAXB writes a DOM element into the anyType field.
+ */
+public final class UICMessagePayload {
+
+    static final String NAMESPACE = "http://uic.cc.org/UICMessage";
+    private static final String MESSAGE = "message";
+    private static final byte[] PREFIX = ("<ns:UICMessage xmlns:ns=\"" + NAMESPACE + "\">").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SUFFIX = "</ns:UICMessage>".getBytes(StandardCharsets.UTF_8);
+
+    private UICMessagePayload() {
+    }
+
+    /**
+     * @param message The stored message, serialized as UTF-8 without XML declaration
+     */
+    public static Source of(InputStream message) {
+        InputStream payload = new SequenceInputStream(Collections.enumeration(List.of(
+                new ByteArrayInputStream(PREFIX),
+                message,
+                new ByteArrayInputStream(SUFFIX)
+        )));
+        return new StAXSource(new MessageElementReader(StaxUtils.createXMLStreamReader(payload, StandardCharsets.UTF_8.name())));
+    }
+
+    /**
+     * Tells whether a failed call failed on reading the stored message, which is malformed or cannot be decoded, rather
+     * than on the transport. Such a message fails the same way on every attempt.
+     */
+    public static boolean isPayloadFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PayloadReadException) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports the root element of the stored message, one level below the UICMessage element, as {@code message}.
+     */
+    private static final class MessageElementReader extends StreamReaderDelegate {
+
+        private int depth;
+
+        private MessageElementReader(XMLStreamReader reader) {
+            super(reader);
+        }
+
+        /**
+         * The stored message is only read here, so its read and parse failures are marked as such on their way
+         * through the SOAP stack.
+         */
+        @Override
+        public int next() throws XMLStreamException {
+            int event;
+            try {
+                event = super.next();
+            } catch (XMLStreamException e) {
+                throw new PayloadReadException(e);
+            }
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+            return event;
+        }
+
+        /**
+         * The parent reader would skip the depth tracking of {@link #next()}.
+         */
+        @Override
+        public int nextTag() throws XMLStreamException {
+            int event = next();
+            while (event == XMLStreamConstants.SPACE || event == XMLStreamConstants.COMMENT || event == XMLStreamConstants.PROCESSING_INSTRUCTION
+                    || (event == XMLStreamConstants.CHARACTERS && isWhiteSpace())) {
+                event = next();
+            }
+            if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+                throw new XMLStreamException("Expected start or end tag", getLocation());
+            }
+            return event;
+        }
+
+        private boolean isMessageElement() {
+            int event = getEventType();
+            // depth is already decremented when the end tag of the message element is reported
+            return (event == XMLStreamConstants.START_ELEMENT && depth == 2) || (event == XMLStreamConstants.END_ELEMENT && depth == 1);
+        }
+
+        @Override
+        public String getLocalName() {
+            return isMessageElement() ? MESSAGE : super.getLocalName();
+        }
+
+        @Override
+        public QName getName() {
+            return isMessageElement() ? new QName(MESSAGE) : super.getName();
+        }
+
+        @Override
+        public String getNamespaceURI() {
+            return isMessageElement() ? null : super.getNamespaceURI();
+        }
+
+        @Override
+        public String getPrefix() {
+            return isMessageElement() ? "" : super.getPrefix();
+        }
+    }
+
+    private static final class PayloadReadException extends XMLStreamException {
+
+        private PayloadReadException(XMLStreamException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+}
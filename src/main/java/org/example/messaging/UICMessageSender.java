@@ -4,19 +4,30 @@ import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.ws.BindingProvider;
+import jakarta.xml.ws.Dispatch;
+import jakarta.xml.ws.Service;
 import jakarta.xml.ws.WebServiceException;
+import jakarta.xml.ws.soap.SOAPBinding;
+import org.apache.cxf.headers.Header;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.example.MessageSendException;
 import org.example.messaging.ack.LITechnicalAck;
 import org.example.messaging.ack.LITechnicalAckBuilder;
+import org.example.util.XmlUtilityService;
+import org.example.util.XmlUtils;
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 
+import javax.xml.namespace.QName;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.InputStream;
+import java.util.List;
 
 @ApplicationScoped
 public class UICMessageSender {
@@ -25,25 +36,30 @@ public class UICMessageSender {
     private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
     private static final String ACK = "ACK";
 
+    private static final QName SERVICE_NAME = new QName(UICMessagePayload.NAMESPACE, "LIReceiveMessageService");
+    private static final QName PORT_NAME = new QName(UICMessagePayload.NAMESPACE, "UICReceiveMessagePort");
+    private static final String HEADER_NAMESPACE = "http://uic.cc.org/UICMessage/Header";
+
     private final LITechnicalAckBuilder liTechnicalAckBuilder;
+    private final XmlUtilityService xmlUtilityService;
     private final String messageLiHost;
-    private final Map<String, UICReceiveMessage> clientCache = new HashMap<>();
 
     public UICMessageSender(
             LITechnicalAckBuilder liTechnicalAckBuilder,
+            XmlUtilityService xmlUtilityService,
             @ConfigProperty(name = "messageLiHost", defaultValue = "localhost") String messageLiHost
     ) {
         this.liTechnicalAckBuilder = liTechnicalAckBuilder;
+        this.xmlUtilityService = xmlUtilityService;
         this.messageLiHost = messageLiHost;
     }
 
-    public void sendMessage(String endpoint, String messageIdentifier, Document message) throws MessageSendException {
-        Log.debugf("Sending message to %s", endpoint);
-        UICReceiveMessage client = getOrCreateClient(endpoint);
+    public void sendMessage(Client client, String messageIdentifier, Document message) throws MessageSendException {
+        Log.debugf("Sending message to %s", client.endpoint());
 
         try {
             UICMessage uicMessage = createUICMessage(message);
-            UICMessageResponse response = client.uicMessage(uicMessage, messageIdentifier, messageLiHost, false, false, false);
+            UICMessageResponse response = client.port().uicMessage(uicMessage, messageIdentifier, messageLiHost, false, false, false);
 
             LITechnicalAck liTechnicalAck = liTechnicalAckBuilder.unmarshal((Node) response.getReturn());
             if (!(liTechnicalAck.getResponseStatus().equalsIgnoreCase(ACK))) {
@@ -60,11 +76,77 @@ public class UICMessageSender {
         }
     }
 
-    private UICReceiveMessage getOrCreateClient(String endpoint) {
-        return clientCache.computeIfAbsent(endpoint, k -> createClient(endpoint));
+    /**
+     * Sends a stored message without building a DOM of it. The message is streamed from the input into the SOAP body,
+     * only the small response is parsed.
+     *
+     * @param message The stored message, serialized as UTF-8 without XML declaration
+     */
+    public void streamMessage(Client client, String messageIdentifier, InputStream message) throws MessageSendException {
+        Log.debugf("Streaming message to %s", client.endpoint());
+        Dispatch<Source> dispatch = client.dispatch();
+
+        try {
+            dispatch.getRequestContext().put(Header.HEADER_LIST, createHeaders(messageIdentifier));
+            Source response = dispatch.invoke(UICMessagePayload.of(message));
+
+            LITechnicalAck liTechnicalAck = liTechnicalAckBuilder.unmarshal(getReturn(response));
+            if (!(liTechnicalAck.getResponseStatus().equalsIgnoreCase(ACK))) {
+                throw new MessageSendException(MessageSendException.FailureType.MESSAGE_REJECTED);
+            }
+            Log.infof("Received LITechnicalAck with responseStatus: %s", liTechnicalAck.getResponseStatus());
+        } catch (WebServiceException e) {
+            // Retrying a message that cannot be read would only fail again and mark the host as unreachable
+            if (UICMessagePayload.isPayloadFailure(e)) {
+                throw new MessageSendException(MessageSendException.FailureType.REQUEST_CREATION_ERROR, e);
+            }
+            Log.error(e);
+            throw new MessageSendException(MessageSendException.FailureType.HOST_UNREACHABLE);
+        } catch (JAXBException | TransformerException | IllegalStateException e) {
+            throw new MessageSendException(MessageSendException.FailureType.RESPONSE_PROCESSING_ERROR, e);
+        }
+    }
+
+    private List<Header> createHeaders(String messageIdentifier) {
+        Document document = xmlUtilityService.createDocument();
+        return List.of(
+                createHeader(document, "messageIdentifier", messageIdentifier),
+                createHeader(document, "messageLiHost", messageLiHost),
+                createHeader(document, "compressed", "false"),
+                createHeader(document, "encrypted", "false"),
+                createHeader(document, "signed", "false")
+        );
     }
 
-    private UICReceiveMessage createClient(String endpoint) {
+    private static Header createHeader(Document document, String name, String value) {
+        Element element = document.createElementNS(HEADER_NAMESPACE, "ns1:" + name);
+        element.setTextContent(value);
+        return new Header(new QName(HEADER_NAMESPACE, name), element);
+    }
+
+    /**
+     * The response payload is the UICMessageResponse element, the LITechnicalAck is wrapped in its return element.
+     */
+    private Node getReturn(Source response) throws TransformerException {
+        DOMResult result = new DOMResult();
+        xmlUtilityService.transform(response, result);
+        Node node = result.getNode();
+        Element responseElement = node instanceof Document document ? document.getDocumentElement() : (Element) node;
+        List<Element> children = XmlUtils.getElementChildNodes(responseElement);
+        if (children.isEmpty()) throw new IllegalStateException("Response has no return element");
+        return children.getFirst();
+    }
+
+    private static Dispatch<Source> createDispatch(String endpoint) {
+        Service service = Service.create(SERVICE_NAME);
+        service.addPort(PORT_NAME, SOAPBinding.SOAP11HTTP_BINDING, endpoint);
+        Dispatch<Source> dispatch = service.createDispatch(PORT_NAME, Source.class, Service.Mode.PAYLOAD);
+        // The dispatch is shared across threads, the SOAP headers of each call must stay with its own thread
+        dispatch.getRequestContext().put("thread.local.request.context", "true");
+        return dispatch;
+    }
+
+    private static UICReceiveMessage createPort(String endpoint) {
         UICReceiveMessage client = MESSAGE_SERVICE.getUICReceiveMessagePort();
         BindingProvider bindingProvider = (BindingProvider) client;
         bindingProvider.getRequestContext().put(BindingProvider.ENDPOINT_ADDRESS_PROPERTY, endpoint);
@@ -76,4 +158,36 @@ public class UICMessageSender {
         uicMessage.setMessage(message.getFirstChild());
         return uicMessage;
     }
+
+    /**
+     * The clients of one endpoint. Each is created on first use and then reused, the {@link Dispatch} only when
+     * messages are streamed.
+     */
+    public static final class Client {
+
+        private final String endpoint;
+        // Racing threads may both create a client, one of them is kept, which is harmless
+        private volatile UICReceiveMessage port;
+        private volatile Dispatch<Source> dispatch;
+
+        public Client(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        public String endpoint() {
+            return endpoint;
+        }
+
+        private UICReceiveMessage port() {
+            UICReceiveMessage current = port;
+            if (current == null) port = current = createPort(endpoint);
+            return current;
+        }
+
+        private Dispatch<Source> dispatch() {
+            Dispatch<Source> current = dispatch;
+            if (current == null) dispatch = current = createDispatch(endpoint);
+            return current;
+        }
+    }
 }
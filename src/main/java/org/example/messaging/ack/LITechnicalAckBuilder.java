@@ -5,9 +5,11 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
 import jakarta.xml.bind.Unmarshaller;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
-import org.example.MessageExtractor;
+import org.example.MessageHeader;
+import org.example.util.ObjectPool;
 import org.example.util.XmlUtilityService;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -16,88 +18,142 @@ import org.w3c.dom.Node;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
-import javax.xml.parsers.ParserConfigurationException;
 
 @ApplicationScoped
 public class LITechnicalAckBuilder {
 
     private static final ObjectFactory OBJECT_FACTORY = new ObjectFactory();
     private static final JAXBContext JAXB_CONTEXT;
+    // The JDK implementation keeps no state between calls, so one instance serves all threads
+    private static final DatatypeFactory DATATYPE_FACTORY;
+    private static final String MESSAGE_TRANSPORT_MECHANISM = "WEBSERVICE";
 
     static {
         try {
             JAXB_CONTEXT = JAXBContext.newInstance(LITechnicalAck.class);
-        } catch (JAXBException e) {
+            DATATYPE_FACTORY = DatatypeFactory.newInstance();
+        } catch (JAXBException | DatatypeConfigurationException e) {
             Log.errorf("Failed to initialize JAXBContext: %s", e.getMessage());
             throw new ExceptionInInitializerError(e);
         }
     }
 
-    private final MessageExtractor messageExtractor;
     private final XmlUtilityService xmlUtilityService;
     private final String remoteLIName;
     private final int remoteLIInstanceNumber;
+    private final boolean templateWriter;
+    private final ObjectPool<Marshaller> marshallerPool;
 
     @Inject
     public LITechnicalAckBuilder(
-            MessageExtractor messageExtractor,
             XmlUtilityService xmlUtilityService,
             @ConfigProperty(name = "comint.remote-li-name", defaultValue = "LIName") String remoteLIName,
-            @ConfigProperty(name = "comint.remote-li-instance-number", defaultValue = "19") int remoteLIInstanceNumber
+            @ConfigProperty(name = "comint.remote-li-instance-number", defaultValue = "19") int remoteLIInstanceNumber,
+            @ConfigProperty(name = "comint.ack.template-writer", defaultValue = "false") boolean templateWriter,
+            @ConfigProperty(name = "comint.xml.pool.max-idle", defaultValue = "64") int maxIdle
     ) {
-        this.messageExtractor = messageExtractor;
         this.xmlUtilityService = xmlUtilityService;
         this.remoteLIName = remoteLIName;
         this.remoteLIInstanceNumber = remoteLIInstanceNumber;
+        this.templateWriter = templateWriter;
+        // Marshallers keep no state between marshal calls that would need a reset
+        this.marshallerPool = new ObjectPool<>(LITechnicalAckBuilder::createMarshaller, marshaller -> {
+        }, maxIdle);
     }
 
-    public Element createAck(String messageIdentifier, Element message) {
-        return createLITechnicalAck(messageIdentifier, message, "ACK");
+    private static Marshaller createMarshaller() {
+        try {
+            return JAXB_CONTEXT.createMarshaller();
+        } catch (JAXBException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    public Element createNack(String messageIdentifier, Element message) {
-        return createLITechnicalAck(messageIdentifier, message, "NACK");
+    public Element createAck(String messageIdentifier, MessageHeader messageHeader) {
+        return createLITechnicalAck(messageIdentifier, messageHeader, "ACK");
     }
 
-    private Element createLITechnicalAck(String messageIdentifier, Element message, String responseStatus) {
+    public Element createNack(String messageIdentifier, MessageHeader messageHeader) {
+        return createLITechnicalAck(messageIdentifier, messageHeader, "NACK");
+    }
+
+    private Element createLITechnicalAck(String messageIdentifier, MessageHeader messageHeader, String responseStatus) {
+        Document document = xmlUtilityService.createDocument();
+        Element wrapper = document.createElement("wrapper");
+        document.appendChild(wrapper);
+        if (templateWriter) {
+            writeLITechnicalAck(wrapper, messageIdentifier, messageHeader, responseStatus);
+        } else {
+            marshalLITechnicalAck(wrapper, messageIdentifier, messageHeader, responseStatus);
+        }
+        return wrapper;
+    }
+
+    private void marshalLITechnicalAck(Element wrapper, String messageIdentifier, MessageHeader messageHeader, String responseStatus) {
         LITechnicalAck liTechnicalAck = OBJECT_FACTORY.createLITechnicalAck();
         liTechnicalAck.setAckIndentifier("ACKID" + messageIdentifier);
         liTechnicalAck.setResponseStatus(responseStatus);
-        liTechnicalAck.setMessageReference(createMessageReference(message));
-        liTechnicalAck.setSender(messageExtractor.extractSender(message));
-        liTechnicalAck.setRecipient(messageExtractor.extractRecipient(message));
+        liTechnicalAck.setMessageReference(createMessageReference(messageHeader));
+        liTechnicalAck.setSender(messageHeader.sender());
+        liTechnicalAck.setRecipient(messageHeader.recipient());
         liTechnicalAck.setRemoteLIName(remoteLIName);
         liTechnicalAck.setRemoteLIInstanceNumber(remoteLIInstanceNumber);
-        liTechnicalAck.setMessageTransportMechanism("WEBSERVICE");
+        liTechnicalAck.setMessageTransportMechanism(MESSAGE_TRANSPORT_MECHANISM);
 
+        Marshaller marshaller = marshallerPool.borrow();
         try {
-            Document document = xmlUtilityService.createDocument();
-            Element wrapper = document.createElement("wrapper");
-            document.appendChild(wrapper);
-            JAXBContext.newInstance(LITechnicalAck.class).createMarshaller().marshal(liTechnicalAck, wrapper);
-            return wrapper;
-        } catch (ParserConfigurationException | JAXBException e) {
+            marshaller.marshal(liTechnicalAck, wrapper);
+        } catch (JAXBException e) {
             Log.error(e);
             throw new RuntimeException(e);
+        } finally {
+            marshallerPool.release(marshaller);
         }
     }
 
-    private MessageReference createMessageReference(Node message) {
+    /**
+     * Writes the same elements JAXB would, in schema order and leaving out absent values, straight into the DOM.
+     */
+    private void writeLITechnicalAck(Element wrapper, String messageIdentifier, MessageHeader messageHeader, String responseStatus) {
+        Element liTechnicalAck = appendElement(wrapper, "LI_TechnicalAck");
+        appendElement(liTechnicalAck, "ResponseStatus", responseStatus);
+        appendElement(liTechnicalAck, "AckIndentifier", "ACKID" + messageIdentifier);
+        Element messageReference = appendElement(liTechnicalAck, "MessageReference");
+        appendElement(messageReference, "MessageType", messageHeader.messageType());
+        appendElement(messageReference, "MessageTypeVersion", messageHeader.messageTypeVersion());
+        appendElement(messageReference, "MessageIdentifier", messageHeader.messageIdentifier());
+        XMLGregorianCalendar messageDateTime = createMessageDateTime(messageHeader.messageDateTime());
+        if (messageDateTime != null) appendElement(messageReference, "MessageDateTime", messageDateTime.toXMLFormat());
+        appendElement(liTechnicalAck, "Sender", messageHeader.sender());
+        appendElement(liTechnicalAck, "Recipient", messageHeader.recipient());
+        appendElement(liTechnicalAck, "RemoteLIName", remoteLIName);
+        appendElement(liTechnicalAck, "RemoteLIInstanceNumber", Integer.toString(remoteLIInstanceNumber));
+        appendElement(liTechnicalAck, "MessageTransportMechanism", MESSAGE_TRANSPORT_MECHANISM);
+    }
+
+    private static Element appendElement(Element parent, String name) {
+        Element element = parent.getOwnerDocument().createElementNS(null, name);
+        parent.appendChild(element);
+        return element;
+    }
+
+    private static void appendElement(Element parent, String name, String text) {
+        if (text == null) return;
+        appendElement(parent, name).appendChild(parent.getOwnerDocument().createTextNode(text));
+    }
+
+    private MessageReference createMessageReference(MessageHeader messageHeader) {
         MessageReference messageReference = OBJECT_FACTORY.createMessageReference();
-        messageReference.setMessageType(messageExtractor.extractMessageType(message));
-        messageReference.setMessageTypeVersion(messageExtractor.extractMessageTypeVersion(message));
-        messageReference.setMessageIdentifier(messageExtractor.extractMessageIdentifier(message));
-        messageReference.setMessageDateTime(createMessageDateTime(messageExtractor.extractMessageDateTime(message)));
+        messageReference.setMessageType(messageHeader.messageType());
+        messageReference.setMessageTypeVersion(messageHeader.messageTypeVersion());
+        messageReference.setMessageIdentifier(messageHeader.messageIdentifier());
+        messageReference.setMessageDateTime(createMessageDateTime(messageHeader.messageDateTime()));
         return messageReference;
     }
 
     private XMLGregorianCalendar createMessageDateTime(String date) {
-        try {
-            return DatatypeFactory.newInstance().newXMLGregorianCalendar(date);
-        } catch (DatatypeConfigurationException e) {
-            Log.error(e);
-            throw new RuntimeException(e);
-        }
+        if (date == null) return null;
+        return DATATYPE_FACTORY.newXMLGregorianCalendar(date);
     }
 
     public LITechnicalAck unmarshal(Node node) throws JAXBException {
@@ -2,7 +2,9 @@ package org.example.outbound;
 
 import io.quarkus.logging.Log;
 import jakarta.jws.WebService;
-import org.example.MessageExtractor;
+import org.example.MessageHeader;
+import org.example.MessageHeaderScanner;
+import org.example.deduplication.DuplicateMessageFilter;
 import org.example.host.Host;
 import org.example.logging.MdcKeys;
 import org.example.rabbitmq.HostQueueProducer;
@@ -18,19 +20,19 @@ public class OutboundEndpoint implements OutboundConnectorService {
     private static final String SUCCESS_MESSAGE = "success";
     private static final String ERROR_MESSAGE = "error";
 
+    private final DuplicateMessageFilter duplicateMessageFilter;
     private final HostQueueProducer hostQueueProducer;
-    private final MessageExtractor messageExtractor;
     private final MessageValidator messageValidator;
     private final RoutingService routingService;
 
     public OutboundEndpoint(
+            DuplicateMessageFilter duplicateMessageFilter,
             HostQueueProducer hostQueueProducer,
-            MessageExtractor messageExtractor,
             MessageValidator messageValidator,
             RoutingService routingService
     ) {
+        this.duplicateMessageFilter = duplicateMessageFilter;
         this.hostQueueProducer = hostQueueProducer;
-        this.messageExtractor = messageExtractor;
         this.messageValidator = messageValidator;
         this.routingService = routingService;
     }
@@ -39,12 +41,16 @@ public class OutboundEndpoint implements OutboundConnectorService {
     public SendOutboundMessageResponse sendOutboundMessage(SendOutboundMessage parameters, String encoded) {
         try {
             Element message = (Element) parameters.getMessage();
-            String messageIdentifier = messageExtractor.extractMessageIdentifier(message);
+            MessageHeader messageHeader = MessageHeaderScanner.scan(message);
+            String messageIdentifier = messageHeader.messageIdentifier();
             MDC.put(MdcKeys.MESSAGE_ID, messageIdentifier);
             Log.debug("Received message");
 
-            messageValidator.validateMessage(message);
-            String responseMessage = processMessage(messageIdentifier, message);
+            Long fingerprint = duplicateMessageFilter.fingerprint(messageIdentifier, message);
+            if (duplicateMessageFilter.isDuplicate(fingerprint)) return createSendOutboundMessageResponse(SUCCESS_MESSAGE);
+
+            messageValidator.validateMessage(message, messageHeader);
+            String responseMessage = processMessage(messageIdentifier, messageHeader, message, fingerprint);
             return createSendOutboundMessageResponse(responseMessage);
         } catch (Exception e) {
             Log.error(e);
@@ -52,11 +58,16 @@ public class OutboundEndpoint implements OutboundConnectorService {
         }
     }
 
-    private String processMessage(String messageIdentifier, Element message) {
-        Host host = routingService.findHost(message);
-        if (host == null) return ERROR_MESSAGE;
+    private String processMessage(String messageIdentifier, MessageHeader messageHeader, Element message, Long fingerprint) {
+        String queue = null;
+        if (!routingService.isRoutedByBroker()) {
+            Host host = routingService.findHost(messageHeader);
+            if (host == null) return ERROR_MESSAGE;
+            queue = host.getName();
+        }
 
-        boolean success = hostQueueProducer.sendUICMessage(host.getName(), messageIdentifier, message);
+        boolean success = hostQueueProducer.sendUICMessage(queue, messageIdentifier, messageHeader, message);
+        if (success) duplicateMessageFilter.markEnqueued(fingerprint);
         return success ? SUCCESS_MESSAGE : ERROR_MESSAGE;
     }
 
@@ -0,0 +1,140 @@
+package org.example.rabbitmq;
+
+import java.io.IOException;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces the acknowledgements of a single consumer channel into multiple-acks.
+ * Deliveries are tracked in delivery tag order as they arrive. Successful deliveries are only acknowledged once every
+ * delivery with a lower tag has been settled, so a multiple-ack never covers a delivery that is still in flight.
+ * Deliveries that are nacked or rejected are settled individually, after flushing the acks below them, so that a
+ * multiple-ack can never be sent for a delivery whose rejection is still pending.
+ * <p>
+ * Deliveries are settled from virtual threads while holding the lock across a socket write, hence a
+ * {@link ReentrantLock} rather than {@code synchronized}, which would pin the carrier thread.
+ */
+public class AckCoalescer {
+
+    private final AckSink sink;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final NavigableSet<Long> inFlight = new TreeSet<>();
+    private final NavigableSet<Long> pendingAcks = new TreeSet<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long oldestPendingAckAt;
+
+    public AckCoalescer(AckSink sink, int maxBatchSize, long maxDelayNanos) {
+        this.sink = sink;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = maxDelayNanos;
+    }
+
+    public void track(long deliveryTag) {
+        lock.lock();
+        try {
+            inFlight.add(deliveryTag);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void ack(long deliveryTag) throws IOException {
+        lock.lock();
+        try {
+            if (!inFlight.remove(deliveryTag)) {
+                // Not tracked (anymore), e.g. after the channel was reset. Nothing to coalesce with.
+                sink.ack(deliveryTag, false);
+                return;
+            }
+            if (pendingAcks.isEmpty()) {
+                oldestPendingAckAt = System.nanoTime();
+            }
+            pendingAcks.add(deliveryTag);
+            if (flushable().size() >= maxBatchSize) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Settles a delivery individually through the given action, e.g. a nack or reject.
+     */
+    public void settle(long deliveryTag, Settlement settlement) throws IOException {
+        lock.lock();
+        try {
+            flush();
+            settlement.run();
+            inFlight.remove(deliveryTag);
+            if (flushable().size() >= maxBatchSize) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flushIfDue() throws IOException {
+        lock.lock();
+        try {
+            if (!pendingAcks.isEmpty() && System.nanoTime() - oldestPendingAckAt >= maxDelayNanos) {
+                flush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            NavigableSet<Long> flushable = flushable();
+            if (flushable.isEmpty()) return;
+
+            sink.ack(flushable.last(), flushable.size() > 1);
+            flushable.clear();
+            oldestPendingAckAt = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean hasInFlight() {
+        lock.lock();
+        try {
+            return !inFlight.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets all deliveries, e.g. because the channel was closed and the broker will redeliver them anyway.
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            inFlight.clear();
+            pendingAcks.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private NavigableSet<Long> flushable() {
+        return inFlight.isEmpty() ? pendingAcks : pendingAcks.headSet(inFlight.first(), false);
+    }
+
+    @FunctionalInterface
+    public interface AckSink {
+        void ack(long deliveryTag, boolean multiple) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface Settlement {
+        void run() throws IOException;
+    }
+}
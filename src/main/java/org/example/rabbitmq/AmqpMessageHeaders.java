@@ -0,0 +1,66 @@
+package org.example.rabbitmq;
+
+import org.example.MessageHeader;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the MessageHeader of a message to AMQP headers and back, so that consumers know what a delivery is about
+ * without parsing its body.
+ */
+public final class AmqpMessageHeaders {
+
+    static final String MESSAGE_TYPE = "x-comint-message-type";
+    static final String MESSAGE_TYPE_VERSION = "x-comint-message-type-version";
+    static final String MESSAGE_IDENTIFIER = "x-comint-message-identifier";
+    static final String MESSAGE_DATE_TIME = "x-comint-message-date-time";
+    static final String SENDER = "x-comint-sender";
+    static final String RECIPIENT = "x-comint-recipient";
+    // Set on every message published with the headers, as any of the fields may be missing from the MessageHeader
+    static final String MESSAGE_HEADER = "x-comint-message-header";
+
+    private AmqpMessageHeaders() {
+    }
+
+    public static Map<String, Object> toHeaders(MessageHeader messageHeader) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(MESSAGE_HEADER, true);
+        putIfPresent(headers, MESSAGE_TYPE, messageHeader.messageType());
+        putIfPresent(headers, MESSAGE_TYPE_VERSION, messageHeader.messageTypeVersion());
+        putIfPresent(headers, MESSAGE_IDENTIFIER, messageHeader.messageIdentifier());
+        putIfPresent(headers, MESSAGE_DATE_TIME, messageHeader.messageDateTime());
+        putIfPresent(headers, SENDER, messageHeader.sender());
+        putIfPresent(headers, RECIPIENT, messageHeader.recipient());
+        return headers;
+    }
+
+    /**
+     * Messages published before the marker header was added are recognized by their version, if they have one.
+     *
+     * @return The MessageHeader carried in the headers, or null for messages published without it
+     */
+    public static MessageHeader fromHeaders(Map<String, Object> headers) {
+        if (headers == null || !(headers.containsKey(MESSAGE_HEADER) || headers.containsKey(MESSAGE_TYPE_VERSION))) return null;
+        return new MessageHeader(
+                getString(headers, MESSAGE_TYPE),
+                getString(headers, MESSAGE_TYPE_VERSION),
+                getString(headers, MESSAGE_IDENTIFIER),
+                getString(headers, MESSAGE_DATE_TIME),
+                getString(headers, SENDER),
+                getString(headers, RECIPIENT)
+        );
+    }
+
+    private static void putIfPresent(Map<String, Object> headers, String key, String value) {
+        if (value != null) headers.put(key, value);
+    }
+
+    /**
+     * String header values arrive as LongString.
+     */
+    private static String getString(Map<String, Object> headers, String key) {
+        Object value = headers.get(key);
+        return value != null ? value.toString() : null;
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands deliveries off the AMQP dispatch threads.
+ * Deliveries of a host that share an ordering key run one after another in arrival order, deliveries with different
+ * keys run concurrently. The number of deliveries running at the same time is bounded per host.
+ * <p>
+ * Deliveries run on platform threads unless {@code comint.delivery.virtual-threads} is set. The CXF HTTP conduit and
+ * the RPCs of amqp-client channels block inside {@code synchronized} blocks, which pins a virtual thread to its carrier
+ * on Java 21, so with virtual threads a few slow hosts can occupy every carrier.
+ */
+@ApplicationScoped
+public class DeliveryDispatcher {
+
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<Void>> lanes = new ConcurrentHashMap<>();
+    private final Map<String, Semaphore> permitsByHost = new ConcurrentHashMap<>();
+    private final Ordering ordering;
+    private final int maxInFlightPerHost;
+
+    public DeliveryDispatcher(
+            @ConfigProperty(name = "comint.delivery.ordering", defaultValue = "HOST") Ordering ordering,
+            @ConfigProperty(name = "comint.delivery.max-in-flight-per-host", defaultValue = "4") int maxInFlightPerHost,
+            @ConfigProperty(name = "comint.delivery.virtual-threads", defaultValue = "false") boolean virtualThreads
+    ) {
+        // Idle platform threads are reclaimed, the permits per host bound how many run at the same time
+        this.executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("delivery-", 0).factory())
+                : Executors.newCachedThreadPool(Thread.ofPlatform().name("delivery-", 0).factory());
+        this.ordering = ordering;
+        this.maxInFlightPerHost = maxInFlightPerHost;
+    }
+
+    public void dispatch(String hostName, AMQP.BasicProperties properties, Runnable delivery) {
+        Semaphore permits = permitsByHost.computeIfAbsent(hostName, k -> new Semaphore(maxInFlightPerHost));
+        Runnable task = () -> runWithPermit(permits, delivery);
+
+        String orderingKey = orderingKey(properties);
+        if (orderingKey == null) {
+            executor.execute(task);
+            return;
+        }
+
+        String lane = hostName + '/' + orderingKey;
+        CompletableFuture<Void> tail = lanes.compute(lane, (k, previous) -> previous == null
+                ? CompletableFuture.runAsync(task, executor)
+                : previous.thenRunAsync(task, executor));
+        tail.whenComplete((result, e) -> lanes.remove(lane, tail));
+    }
+
+    /**
+     * The AMQP type only tells UIC from inbound messages, so the message type comes from the MessageHeader headers.
+     * Deliveries without them share the lane of the host.
+     */
+    private String orderingKey(AMQP.BasicProperties properties) {
+        return switch (ordering) {
+            case HOST -> "";
+            case MESSAGE_TYPE -> {
+                Map<String, Object> headers = properties.getHeaders();
+                Object messageType = headers != null ? headers.get(AmqpMessageHeaders.MESSAGE_TYPE) : null;
+                yield messageType != null ? "type:" + messageType : "";
+            }
+            case NONE -> null;
+        };
+    }
+
+    private void runWithPermit(Semaphore permits, Runnable delivery) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            delivery.run();
+        } catch (Exception e) {
+            // Must not escape, a failed future would skip every later delivery of the lane
+            Log.error("Unexpected error while handling delivery", e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    @PreDestroy
+    void destroy() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Log.warn("Deliveries still running after shutdown timeout");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public enum Ordering {
+        /**
+         * All deliveries of a host in queue order, one at a time.
+         */
+        HOST,
+        /**
+         * Deliveries of the same MessageType in queue order, different types concurrently.
+         */
+        MESSAGE_TYPE,
+        /**
+         * No ordering, deliveries run concurrently up to the per host limit.
+         */
+        NONE
+    }
+}
@@ -4,137 +4,406 @@ import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.ShutdownSignalException;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.MessageHeader;
+import org.example.MessageHeaderScanner;
 import org.example.MessageSendException;
 import org.example.MessageTypes;
 import org.example.host.Host;
+import org.example.host.HostRuntime;
+import org.example.host.HostRuntime.DeliveryOutcome;
+import org.example.host.HostRuntimeRegistry;
+import org.example.host.HostStateChangedEvent;
 import org.example.host.HostStateService;
 import org.example.inbound.InboundMessageSender;
 import org.example.logging.MdcKeys;
 import org.example.messaging.UICMessageSender;
 import org.example.util.XmlUtilityService;
+import org.example.validation.MessageValidationException;
+import org.example.validation.MessageValidator;
 import org.jboss.logmanager.MDC;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.ParserConfigurationException;
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @ApplicationScoped
-public class HostQueueConsumer implements Consumer {
+public class HostQueueConsumer {
 
+    private final DeliveryDispatcher deliveryDispatcher;
     private final HostStateService hostStateService;
+    private final HostRuntimeRegistry hostRuntimeRegistry;
     private final InboundMessageSender inboundMessageSender;
+    private final PayloadEncoding payloadEncoding;
     private final RabbitMQService rabbitMQService;
     private final UICMessageSender uicMessageSender;
-    private final Map<String, Host> hostsByConsumerTags = new ConcurrentHashMap<>();
+    private final MessageValidator messageValidator;
+    private final StreamOffsets streamOffsets;
+    private final AtomicLong consumerTagSequence = new AtomicLong();
     private final XmlUtilityService xmlUtilityService;
+    private final boolean streamUICMessages;
+    private final boolean validateUICMessages;
+    private final int defaultPrefetchCount;
+    private final Duration confirmTimeout;
 
     @Inject
     public HostQueueConsumer(
+            DeliveryDispatcher deliveryDispatcher,
             HostStateService hostStateService,
+            HostRuntimeRegistry hostRuntimeRegistry,
             InboundMessageSender inboundMessageSender,
+            PayloadEncoding payloadEncoding,
             RabbitMQService rabbitMQService,
             UICMessageSender uicMessageSender,
-            XmlUtilityService xmlUtilityService
+            MessageValidator messageValidator,
+            StreamOffsets streamOffsets,
+            XmlUtilityService xmlUtilityService,
+            @ConfigProperty(name = "comint.delivery.stream-uic-messages", defaultValue = "false") boolean streamUICMessages,
+            @ConfigProperty(name = "comint.delivery.validate-uic-messages", defaultValue = "false") boolean validateUICMessages,
+            @ConfigProperty(name = "rabbitmq.prefetch-count", defaultValue = "10") int defaultPrefetchCount,
+            @ConfigProperty(name = "rabbitmq.confirm-timeout", defaultValue = "5s") Duration confirmTimeout
     ) {
+        this.deliveryDispatcher = deliveryDispatcher;
         this.hostStateService = hostStateService;
+        this.hostRuntimeRegistry = hostRuntimeRegistry;
         this.inboundMessageSender = inboundMessageSender;
+        this.payloadEncoding = payloadEncoding;
         this.rabbitMQService = rabbitMQService;
         this.uicMessageSender = uicMessageSender;
+        this.messageValidator = messageValidator;
+        this.streamOffsets = streamOffsets;
         this.xmlUtilityService = xmlUtilityService;
+        this.streamUICMessages = streamUICMessages;
+        this.validateUICMessages = validateUICMessages;
+        this.defaultPrefetchCount = defaultPrefetchCount;
+        this.confirmTimeout = confirmTimeout;
     }
 
-    public void startConsuming(Host host) {
-        String consumerTag = rabbitMQService.consume(host.getName(), this);
-        hostsByConsumerTags.put(consumerTag, host);
+    /**
+     * The consumer tag is chosen up front and registered before subscribing, as the broker may start delivering
+     * before basicConsume returns.
+     */
+    public void startConsuming(HostRuntime runtime) {
+        Host host = runtime.host();
+        String consumerTag = host.getName() + "-" + consumerTagSequence.incrementAndGet();
+        if (!runtime.setConsumerTag(consumerTag)) {
+            Log.debugf("Already consuming queue of host %s", host.getName());
+            return;
+        }
+        hostRuntimeRegistry.bindConsumerTag(consumerTag, runtime);
+
+        int prefetchCount = host.getPrefetchCount() != null ? host.getPrefetchCount() : defaultPrefetchCount;
+        try {
+            Map<String, Object> arguments = QueueArguments.consumerArguments(host, streamOffsets.nextOffset(host.getName()));
+            rabbitMQService.consume(host.getName(), prefetchCount, consumerTag, arguments, new Subscription(host.getName()));
+        } catch (RuntimeException e) {
+            runtime.clearConsumerTag(consumerTag);
+            hostRuntimeRegistry.unbindConsumerTag(consumerTag);
+            throw e;
+        }
+    }
+
+    /**
+     * Leaves the messages of the host parked in its queue until {@link #startConsuming(HostRuntime)} is called again.
+     */
+    public void stopConsuming(HostRuntime runtime) {
+        String consumerTag = runtime.clearConsumerTag(null);
+        if (consumerTag == null) return;
+        rabbitMQService.cancelConsumer(runtime.name(), consumerTag);
+    }
+
+    void onHostStateChanged(@Observes HostStateChangedEvent event) {
+        Host host = event.host();
+        try {
+            if (event.current().isHealthy()) {
+                Log.infof("Host %s is %s again, resuming consumption", host.getName(), event.current());
+                startConsuming(event.runtime());
+            } else if (event.previous().isHealthy()) {
+                Log.infof("Host %s is %s, pausing consumption", host.getName(), event.current());
+                stopConsuming(event.runtime());
+            }
+        } catch (RuntimeException e) {
+            Log.errorf("Failed to update consumer of host %s: %s", host.getName(), e.getMessage());
+        }
     }
 
-    @Override
-    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties basicProperties, byte[] bytes) {
+    /**
+     * Runs on the AMQP dispatch thread of the host channel, so it only registers the delivery and hands it off.
+     * The consumer tag leads to the runtime of the host, which has everything else the delivery needs.
+     */
+    private void handleDelivery(String hostName, String consumerTag, Envelope envelope, AMQP.BasicProperties basicProperties, byte[] bytes) {
         long deliveryTag = envelope.getDeliveryTag();
+        HostRuntime runtime = hostRuntimeRegistry.getByConsumerTag(consumerTag);
+        if (runtime == null) {
+            requeueUnclaimed(hostName, consumerTag, deliveryTag);
+            return;
+        }
+        rabbitMQService.trackDelivery(runtime.name(), deliveryTag);
+        Long streamOffset = streamOffset(basicProperties);
+        if (streamOffset != null) streamOffsets.received(runtime.name(), streamOffset);
+        deliveryDispatcher.dispatch(runtime.name(), basicProperties, () -> {
+            try {
+                if (runtime.state().isHealthy() && !runtime.isRetired()) {
+                    deliver(runtime, deliveryTag, basicProperties, bytes, streamOffset);
+                } else {
+                    release(runtime, deliveryTag, streamOffset);
+                }
+            } finally {
+                if (streamOffset != null) streamOffsets.settled(runtime.name(), streamOffset);
+            }
+        });
+    }
+
+    /**
+     * Deliveries still waiting in the dispatcher when their host went down are not sent, where they would only fail
+     * into a retry tier, nor those of a host that was retired. They go back to the queue for the next subscription,
+     * on a stream by rewinding its offset.
+     */
+    private void release(HostRuntime runtime, long deliveryTag, Long streamOffset) {
+        Log.debugf("Host %s is %s, returning delivery to the queue", runtime.name(), runtime.state());
+        if (streamOffset != null) streamOffsets.rewind(runtime.name(), streamOffset);
+        rabbitMQService.requeue(runtime.name(), deliveryTag);
+    }
+
+    /**
+     * A delivery can still arrive for a consumer whose host was stopped or retired in the meantime. It goes back to the
+     * queue of the host, on the channel it was delivered on.
+     */
+    private void requeueUnclaimed(String hostName, String consumerTag, long deliveryTag) {
+        Log.warnf("Received delivery for cancelled consumer %s, returning it to the queue", consumerTag);
+        try {
+            rabbitMQService.trackDelivery(hostName, deliveryTag);
+            rabbitMQService.requeue(hostName, deliveryTag);
+        } catch (RuntimeException e) {
+            Log.errorf("Failed to requeue delivery of cancelled consumer %s: %s", consumerTag, e.getMessage());
+        }
+    }
+
+    /**
+     * Stream deliveries carry their offset, which lets a resumed or restarted subscription continue where the previous
+     * one stopped instead of starting from the configured offset again.
+     */
+    private static Long streamOffset(AMQP.BasicProperties basicProperties) {
+        Map<String, Object> headers = basicProperties.getHeaders();
+        return headers != null && headers.get(QueueArguments.STREAM_OFFSET) instanceof Number offset ? offset.longValue() : null;
+    }
+
+    private void deliver(HostRuntime runtime, long deliveryTag, AMQP.BasicProperties basicProperties, byte[] bytes, Long streamOffset) {
+        Host host = runtime.host();
         String messageType = basicProperties.getType();
         String messageId = basicProperties.getMessageId();
-        Host host = hostsByConsumerTags.get(consumerTag);
+        MessageHeader messageHeader = readMessageHeader(basicProperties, bytes);
         MDC.put(MdcKeys.HOST_NAME, host.getName());
         MDC.put(MdcKeys.MESSAGE_ID, messageId);
-        Log.info("Handling delivery");
+        MDC.put(MdcKeys.MESSAGE_TYPE, String.valueOf(messageHeader.messageType()));
+        MDC.put(MdcKeys.SENDER, String.valueOf(messageHeader.sender()));
+        Log.infof("Handling delivery of %s message version %s", messageType, messageHeader.messageTypeVersion());
 
-        try {
-            DocumentBuilder documentBuilder = xmlUtilityService.createDocumentBuilder();
-            ByteArrayInputStream input = new ByteArrayInputStream(bytes);
-            Document document = documentBuilder.parse(input);
-            String endpoint = host.getUrl() + host.getMessagingEndpoint();
+        if (!MessageTypes.UIC_MESSAGE.equals(messageType) && !MessageTypes.INBOUND_MESSAGE.equals(messageType)) {
+            Log.errorf("Unknown message type %s. Deleting message from queue", messageType);
+            rabbitMQService.reject(host.getName(), deliveryTag);
+            recordDelivery(runtime, messageHeader, DeliveryOutcome.REJECTED);
+            return;
+        }
 
+        Timer.Sample sample = Timer.start();
+        try {
             switch (messageType) {
-                case MessageTypes.UIC_MESSAGE -> uicMessageSender.sendMessage(endpoint, messageId, document);
-                case MessageTypes.INBOUND_MESSAGE -> inboundMessageSender.sendMessage(endpoint, document);
+                case MessageTypes.UIC_MESSAGE -> sendUICMessage(runtime.uicClient(), messageId, messageHeader, basicProperties, bytes);
+                case MessageTypes.INBOUND_MESSAGE -> inboundMessageSender.sendMessage(runtime.inboundClient(), parse(basicProperties, bytes));
             }
-            rabbitMQService.ack(deliveryTag);
+            rabbitMQService.ack(host.getName(), deliveryTag);
+            recordDelivery(runtime, messageHeader, DeliveryOutcome.DELIVERED);
         } catch (MessageSendException e) {
-            handleSendException(deliveryTag, host, e);
-        } catch (ParserConfigurationException | IOException | SAXException e) {
-            throw new RuntimeException(e);
+            handleSendException(deliveryTag, basicProperties, bytes, streamOffset, runtime, e);
+            recordDelivery(runtime, messageHeader, e.getFailureType() == MessageSendException.FailureType.HOST_UNREACHABLE ? DeliveryOutcome.RETRIED : DeliveryOutcome.REJECTED);
+        } catch (IOException | SAXException e) {
+            Log.error("Failed to parse message. Deleting message from queue", e);
+            rabbitMQService.reject(host.getName(), deliveryTag);
+            recordDelivery(runtime, messageHeader, DeliveryOutcome.REJECTED);
+        } catch (MessageValidationException e) {
+            Log.errorf("Invalid message: %s. Deleting message from queue", e.getMessage());
+            rabbitMQService.reject(host.getName(), deliveryTag);
+            recordDelivery(runtime, messageHeader, DeliveryOutcome.REJECTED);
+        } finally {
+            sample.stop(runtime.deliveryTimer());
+        }
+    }
+
+    private void sendUICMessage(UICMessageSender.Client client, String messageId, MessageHeader messageHeader, AMQP.BasicProperties basicProperties, byte[] bytes)
+            throws MessageSendException, MessageValidationException, IOException, SAXException {
+        if (!streamUICMessages) {
+            Document document = parse(basicProperties, bytes);
+            if (validateUICMessages) messageValidator.validateMessage(document.getDocumentElement(), messageHeader);
+            uicMessageSender.sendMessage(client, messageId, document);
+            return;
+        }
+        // Validating while streaming would only fail after parts of the message went out, so it is a pass of its own
+        if (validateUICMessages) {
+            try (InputStream input = payloadEncoding.decode(basicProperties.getContentEncoding(), bytes)) {
+                messageValidator.validateMessage(input, messageHeader);
+            }
+        }
+        try (InputStream input = payloadEncoding.decode(basicProperties.getContentEncoding(), bytes)) {
+            uicMessageSender.streamMessage(client, messageId, input);
+        }
+    }
+
+    /**
+     * The body is only parsed right before it is sent.
+     */
+    private Document parse(AMQP.BasicProperties basicProperties, byte[] bytes) throws IOException, SAXException {
+        try (InputStream input = payloadEncoding.decode(basicProperties.getContentEncoding(), bytes)) {
+            return xmlUtilityService.parse(input);
+        }
+    }
+
+    /**
+     * Messages published before the header fields were carried in AMQP headers only have them in their body, which
+     * is then scanned up to the end of the MessageHeader.
+     */
+    private MessageHeader readMessageHeader(AMQP.BasicProperties basicProperties, byte[] bytes) {
+        MessageHeader messageHeader = AmqpMessageHeaders.fromHeaders(basicProperties.getHeaders());
+        if (messageHeader != null) return messageHeader;
+
+        try (InputStream input = payloadEncoding.decode(basicProperties.getContentEncoding(), bytes)) {
+            return MessageHeaderScanner.scan(input);
+        } catch (IOException | XMLStreamException e) {
+            Log.warnf("Failed to read MessageHeader of delivery: %s", e.getMessage());
+            return MessageHeader.EMPTY;
         }
     }
 
-    private void handleSendException(long deliveryTag, Host host, MessageSendException e) {
+    private static void recordDelivery(HostRuntime runtime, MessageHeader messageHeader, DeliveryOutcome outcome) {
+        runtime.recordDelivery(messageHeader.messageType(), outcome);
+    }
+
+    private void handleSendException(long deliveryTag, AMQP.BasicProperties basicProperties, byte[] bytes, Long streamOffset, HostRuntime runtime, MessageSendException e) {
+        Host host = runtime.host();
         switch (e.getFailureType()) {
             case REQUEST_CREATION_ERROR -> {
                 Log.error("Failed to create request. Deleting message from queue", e);
-                rabbitMQService.reject(deliveryTag);
+                rabbitMQService.reject(host.getName(), deliveryTag);
             }
             case HOST_UNREACHABLE -> {
-                hostStateService.messageDeliveryFailure(host);
+                hostStateService.messageDeliveryFailure(runtime);
                 Log.error("Failed to deliver message. Host unreachable.");
-                rabbitMQService.nack(deliveryTag);
+                if (streamOffset != null) {
+                    // A retry copy would be dead-lettered into the stream as a second entry, so the offset waits instead
+                    release(runtime, deliveryTag, streamOffset);
+                    hostStateService.streamDeliveryFailure(runtime);
+                } else {
+                    scheduleRetry(deliveryTag, basicProperties, bytes, host);
+                }
             }
             case RESPONSE_PROCESSING_ERROR, MESSAGE_REJECTED -> {
                 Log.error("Message was delivered but there was a processing issue");
-                rabbitMQService.reject(deliveryTag);
+                rabbitMQService.reject(host.getName(), deliveryTag);
             }
         }
     }
 
-    @Override
-    public void handleConsumeOk(String consumerTag) {
+    /**
+     * The delivery is only acked once the broker has confirmed its copy in the retry queue, so a failed hand-over
+     * leaves the message with the host queue rather than losing it.
+     */
+    private void scheduleRetry(long deliveryTag, AMQP.BasicProperties basicProperties, byte[] bytes, Host host) {
+        try {
+            rabbitMQService.publishForRetry(host.getName(), basicProperties, bytes).get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            rabbitMQService.ack(host.getName(), deliveryTag);
+        } catch (ExecutionException | TimeoutException e) {
+            Log.errorf("Failed to schedule retry: %s", e.getMessage());
+            rabbitMQService.nack(host.getName(), deliveryTag);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rabbitMQService.nack(host.getName(), deliveryTag);
+        }
+    }
+
+    private void handleConsumeOk(String consumerTag) {
         Log.infof("Consumer registered successfully with tag: %s", consumerTag);
     }
 
-    @Override
-    public void handleCancelOk(String consumerTag) {
-        Host host = hostsByConsumerTags.remove(consumerTag);
-        if (host != null) {
-            Log.infof("Consumer cancelled for host: %s", host.getName());
+    private void handleCancelOk(String consumerTag) {
+        HostRuntime runtime = hostRuntimeRegistry.unbindConsumerTag(consumerTag);
+        if (runtime != null) {
+            Log.infof("Consumer cancelled for host: %s", runtime.name());
         }
     }
 
-    @Override
-    public void handleCancel(String consumerTag) {
-        Host host = hostsByConsumerTags.remove(consumerTag);
-        if (host != null) {
-            Log.warnf("Consumer externally cancelled for host: ", host.getName());
-            // startConsuming(host);
+    private void handleCancel(String consumerTag) {
+        HostRuntime runtime = hostRuntimeRegistry.unbindConsumerTag(consumerTag);
+        if (runtime != null) {
+            runtime.clearConsumerTag(consumerTag);
+            Log.warnf("Consumer externally cancelled for host: %s", runtime.name());
+            // startConsuming(runtime);
         }
     }
 
-    @Override
-    public void handleShutdownSignal(String consumerTag, ShutdownSignalException e) {
+    private void handleShutdownSignal(String consumerTag, ShutdownSignalException e) {
         Log.errorf("Shutdown signal received for consumer: %s", consumerTag);
-        Host host = hostsByConsumerTags.get(consumerTag);
-        if (host != null) {
-            Log.errorf("Removed %s from active consumers", host.getName());
+        HostRuntime runtime = hostRuntimeRegistry.getByConsumerTag(consumerTag);
+        if (runtime != null) {
+            Log.errorf("Removed %s from active consumers", runtime.name());
         }
     }
 
-    @Override
-    public void handleRecoverOk(String consumerTag) {
+    private void handleRecoverOk(String consumerTag) {
         Log.info("Recover ok");
     }
+
+    /**
+     * The consumer of one subscription, which knows its host even when its tag is no longer bound to a runtime.
+     */
+    private final class Subscription implements Consumer {
+
+        private final String hostName;
+
+        Subscription(String hostName) {
+            this.hostName = hostName;
+        }
+
+        @Override
+        public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties basicProperties, byte[] bytes) {
+            HostQueueConsumer.this.handleDelivery(hostName, consumerTag, envelope, basicProperties, bytes);
+        }
+
+        @Override
+        public void handleConsumeOk(String consumerTag) {
+            HostQueueConsumer.this.handleConsumeOk(consumerTag);
+        }
+
+        @Override
+        public void handleCancelOk(String consumerTag) {
+            HostQueueConsumer.this.handleCancelOk(consumerTag);
+        }
+
+        @Override
+        public void handleCancel(String consumerTag) {
+            HostQueueConsumer.this.handleCancel(consumerTag);
+        }
+
+        @Override
+        public void handleShutdownSignal(String consumerTag, ShutdownSignalException e) {
+            HostQueueConsumer.this.handleShutdownSignal(consumerTag, e);
+        }
+
+        @Override
+        public void handleRecoverOk(String consumerTag) {
+            HostQueueConsumer.this.handleRecoverOk(consumerTag);
+        }
+    }
 }
@@ -2,56 +2,80 @@ package org.example.rabbitmq;
 
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.MessageHeader;
 import org.example.MessageTypes;
 import org.example.util.XmlUtilityService;
 import org.w3c.dom.Element;
 
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerException;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @ApplicationScoped
 public class HostQueueProducer {
 
+    private final PayloadEncoding payloadEncoding;
     private final RabbitMQService rabbitMQService;
+    private final RoutingExchange routingExchange;
     private final XmlUtilityService xmlUtilityService;
+    private final Duration confirmTimeout;
 
     public HostQueueProducer(
+            PayloadEncoding payloadEncoding,
             RabbitMQService rabbitMQService,
-            XmlUtilityService xmlUtilityService
+            RoutingExchange routingExchange,
+            XmlUtilityService xmlUtilityService,
+            @ConfigProperty(name = "rabbitmq.confirm-timeout", defaultValue = "5s") Duration confirmTimeout
     ) {
+        this.payloadEncoding = payloadEncoding;
         this.rabbitMQService = rabbitMQService;
+        this.routingExchange = routingExchange;
         this.xmlUtilityService = xmlUtilityService;
+        this.confirmTimeout = confirmTimeout;
     }
 
-    public boolean sendUICMessage(String queue, String messageIdentifier, Element message) {
-        return send(queue, messageIdentifier, MessageTypes.UIC_MESSAGE, message);
+    public boolean sendUICMessage(String queue, String messageIdentifier, MessageHeader messageHeader, Element message) {
+        return send(queue, messageIdentifier, MessageTypes.UIC_MESSAGE, messageHeader, message);
     }
 
-    public boolean sendInboundMessage(String queue, String messageIdentifier, Element message) {
-        return send(queue, messageIdentifier, MessageTypes.INBOUND_MESSAGE, message);
+    public boolean sendInboundMessage(String queue, String messageIdentifier, MessageHeader messageHeader, Element message) {
+        return send(queue, messageIdentifier, MessageTypes.INBOUND_MESSAGE, messageHeader, message);
     }
 
-    private boolean send(String queue, String messageIdentifier, String messageType, Element message) {
+    /**
+     * Returns true only once the broker has confirmed that it took responsibility for the message.
+     *
+     * @param queue The host queue, or null to publish to the {@link RoutingExchange}, which picks the queues
+     */
+    private boolean send(String queue, String messageIdentifier, String messageType, MessageHeader messageHeader, Element message) {
         try {
-            rabbitMQService.publish(queue, messageIdentifier, messageType, elementToBytes(message));
+            Map<String, Object> headers = AmqpMessageHeaders.toHeaders(messageHeader);
+            PayloadEncoding.Encoded payload = xmlUtilityService.serialize(message, payloadEncoding::encode);
+            CompletableFuture<Void> confirm;
+            if (queue != null) {
+                confirm = rabbitMQService.publish(queue, messageIdentifier, messageType, headers, payload);
+            } else {
+                RoutingExchange.putRoutingHeaders(headers, messageHeader);
+                confirm = rabbitMQService.publishToExchange(routingExchange.name(), messageIdentifier, messageType, headers, payload);
+            }
+            confirm.get(confirmTimeout.toMillis(), TimeUnit.MILLISECONDS);
             return true;
+        } catch (ExecutionException e) {
+            Log.errorf("Message was not confirmed by the broker: %s", e.getCause().getMessage());
+            return false;
+        } catch (TimeoutException e) {
+            Log.errorf("No publisher confirm received within %s", confirmTimeout);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
+            Log.errorf("Failed to publish message: %s", e.getMessage());
             return false;
         }
     }
-
-    private byte[] elementToBytes(Element element) {
-        try {
-            Transformer transformer = xmlUtilityService.createTransformer();
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            transformer.transform(new DOMSource(element), new StreamResult(outputStream));
-            return outputStream.toByteArray();
-        } catch (TransformerException e) {
-            Log.errorf("Failed to transform message: %s", e.getMessage());
-            throw new RuntimeException(e);
-        }
-    }
 }
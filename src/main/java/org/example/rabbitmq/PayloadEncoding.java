@@ -0,0 +1,101 @@
+package org.example.rabbitmq;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses message payloads on their way into the broker and signals the codec through the AMQP content encoding.
+ * Payloads below the threshold are stored as they are, where compression costs more than it saves.
+ */
+@ApplicationScoped
+public class PayloadEncoding {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private final Codec codec;
+    private final int threshold;
+
+    public PayloadEncoding(
+            @ConfigProperty(name = "rabbitmq.compression.codec", defaultValue = "NONE") Codec codec,
+            @ConfigProperty(name = "rabbitmq.compression.threshold", defaultValue = "4096") int threshold
+    ) {
+        this.codec = codec;
+        this.threshold = threshold;
+    }
+
+    public Encoded encode(byte[] payload) throws IOException {
+        return encode(payload, payload.length);
+    }
+
+    /**
+     * Encodes the first {@code length} bytes of a buffer that may be reused afterwards. The returned payload never
+     * shares the buffer unless it is the whole array.
+     */
+    public Encoded encode(byte[] buffer, int length) throws IOException {
+        if (codec == Codec.NONE || length < threshold) {
+            return new Encoded(null, length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length / 4);
+        switch (codec) {
+            case GZIP -> {
+                try (OutputStream compressor = new GZIPOutputStream(outputStream, 8192)) {
+                    compressor.write(buffer, 0, length);
+                }
+            }
+            case DEFLATE -> {
+                // The zlib format, as the "deflate" content encoding expects: a 2 byte header and an Adler-32 trailer
+                // instead of the larger gzip header and CRC-32. It is faster than gzip because of BEST_SPEED, not the
+                // format, gzip compresses at the default level
+                Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+                try (OutputStream compressor = new DeflaterOutputStream(outputStream, deflater, 8192)) {
+                    compressor.write(buffer, 0, length);
+                } finally {
+                    deflater.end();
+                }
+            }
+        }
+        return new Encoded(codec.contentEncoding, outputStream.toByteArray());
+    }
+
+    /**
+     * Decompresses while the payload is read, so the parser never needs the whole plain payload as one array.
+     */
+    public InputStream decode(String contentEncoding, byte[] payload) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(payload);
+        if (contentEncoding == null || contentEncoding.isEmpty()) return inputStream;
+        return switch (contentEncoding) {
+            case GZIP -> new GZIPInputStream(inputStream, 8192);
+            case DEFLATE -> new InflaterInputStream(inputStream);
+            default -> throw new IOException("Unsupported content encoding " + contentEncoding);
+        };
+    }
+
+    public record Encoded(String contentEncoding, byte[] payload) {
+    }
+
+    public enum Codec {
+        NONE(null),
+        GZIP(PayloadEncoding.GZIP),
+        DEFLATE(PayloadEncoding.DEFLATE);
+
+        private final String contentEncoding;
+
+        Codec(String contentEncoding) {
+            this.contentEncoding = contentEncoding;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownSignalException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the outstanding publisher confirms of a single channel in confirm mode.
+ * Publishers register the sequence number of their message and wait on the returned future, which completes once the
+ * broker confirmed the message (possibly together with others through a multiple ack) and fails if the broker nacked
+ * or returned it, or if the channel was shut down before the confirm arrived.
+ */
+public class PublishConfirmTracker implements ConfirmListener, ReturnListener {
+
+    private final ConcurrentNavigableMap<Long, PendingConfirm> outstanding = new ConcurrentSkipListMap<>();
+    private final Timer confirmLatency;
+    private final Counter nacked;
+    private final Counter returned;
+    // Listener callbacks of a channel run one after another on its connection thread
+    private String returnReason;
+
+    public PublishConfirmTracker(MeterRegistry meterRegistry) {
+        this.confirmLatency = meterRegistry.timer("rabbitmq.publish.confirm.latency");
+        this.nacked = meterRegistry.counter("rabbitmq.publish.nacked");
+        this.returned = meterRegistry.counter("rabbitmq.publish.returned");
+    }
+
+    public int outstandingCount() {
+        return outstanding.size();
+    }
+
+    public CompletableFuture<Void> register(long sequenceNumber) {
+        PendingConfirm pending = new PendingConfirm(System.nanoTime());
+        outstanding.put(sequenceNumber, pending);
+        return pending.future;
+    }
+
+    /**
+     * Drops a registration whose message never made it onto the wire.
+     */
+    public void cancel(long sequenceNumber, Throwable cause) {
+        PendingConfirm pending = outstanding.remove(sequenceNumber);
+        if (pending != null) pending.future.completeExceptionally(cause);
+    }
+
+    /**
+     * A returned message was routed to no queue, so the broker confirms it right after the return. The next ack
+     * carries its sequence number.
+     */
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+        if (returnReason != null) {
+            PendingConfirm pending = outstanding.get(deliveryTag);
+            if (pending != null) pending.returnReason = returnReason;
+            returnReason = null;
+        }
+        settle(deliveryTag, multiple, null);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+        Log.warnf("Broker nacked publish sequence %d (multiple=%b)", deliveryTag, multiple);
+        returnReason = null;
+        settle(deliveryTag, multiple, new IOException("Message was nacked by the broker"));
+    }
+
+    /**
+     * The broker sends basic.return before the confirm of the same message, so the return is only remembered here
+     * and the pending confirm failed once its ack arrives.
+     */
+    @Override
+    public void handleReturn(int replyCode, String replyText, String exchange, String routingKey, AMQP.BasicProperties properties, byte[] body) {
+        returned.increment();
+        Log.errorf("Message returned by the broker: %d %s (exchange='%s', routingKey='%s')", replyCode, replyText, exchange, routingKey);
+        returnReason = replyCode + " " + replyText;
+    }
+
+    public void handleShutdown(ShutdownSignalException cause) {
+        Map.Entry<Long, PendingConfirm> entry;
+        while ((entry = outstanding.pollFirstEntry()) != null) {
+            entry.getValue().future.completeExceptionally(new IOException("Channel was shut down before the publish was confirmed", cause));
+        }
+    }
+
+    private void settle(long sequenceNumber, boolean multiple, Exception failure) {
+        if (!multiple) {
+            PendingConfirm pending = outstanding.remove(sequenceNumber);
+            if (pending != null) complete(pending, failure);
+            return;
+        }
+
+        Map.Entry<Long, PendingConfirm> entry;
+        while ((entry = outstanding.firstEntry()) != null && entry.getKey() <= sequenceNumber) {
+            if (outstanding.remove(entry.getKey(), entry.getValue())) {
+                complete(entry.getValue(), failure);
+            }
+        }
+    }
+
+    private void complete(PendingConfirm pending, Exception failure) {
+        if (failure != null) {
+            nacked.increment();
+            pending.future.completeExceptionally(failure);
+            return;
+        }
+
+        confirmLatency.record(System.nanoTime() - pending.publishedAt, TimeUnit.NANOSECONDS);
+        if (pending.returnReason != null) {
+            pending.future.completeExceptionally(new IOException("Message was returned by the broker: " + pending.returnReason));
+        } else {
+            pending.future.complete(null);
+        }
+    }
+
+    private static class PendingConfirm {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final long publishedAt;
+        private volatile String returnReason;
+
+        private PendingConfirm(long publishedAt) {
+            this.publishedAt = publishedAt;
+        }
+    }
+}
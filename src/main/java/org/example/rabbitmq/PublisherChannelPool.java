@@ -0,0 +1,118 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.quarkus.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed size pool of publishing channels in confirm mode.
+ * A borrowed channel belongs to the borrowing thread until it is released, which keeps the publish sequence numbers of
+ * a channel in the same order as its publishes without any further locking.
+ */
+public class PublisherChannelPool {
+
+    private final Connection connection;
+    private final MeterRegistry meterRegistry;
+    private final BlockingQueue<PooledChannel> idleChannels;
+    private final List<PooledChannel> channels = new CopyOnWriteArrayList<>();
+    private final Duration borrowTimeout;
+    private final Counter borrows;
+    private final Counter contendedBorrows;
+    private final Timer borrowWait;
+
+    public PublisherChannelPool(Connection connection, int size, Duration borrowTimeout, MeterRegistry meterRegistry) throws IOException {
+        this.connection = connection;
+        this.meterRegistry = meterRegistry;
+        this.idleChannels = new ArrayBlockingQueue<>(size);
+        this.borrowTimeout = borrowTimeout;
+        this.borrows = meterRegistry.counter("rabbitmq.publisher.channel.borrows");
+        this.contendedBorrows = meterRegistry.counter("rabbitmq.publisher.channel.contended");
+        this.borrowWait = meterRegistry.timer("rabbitmq.publisher.channel.wait");
+        meterRegistry.gauge("rabbitmq.publisher.channel.idle", idleChannels, BlockingQueue::size);
+        meterRegistry.gauge("rabbitmq.publish.outstanding", channels, PublisherChannelPool::outstandingConfirms);
+
+        for (int i = 0; i < size; i++) {
+            idleChannels.add(createChannel());
+        }
+    }
+
+    private PooledChannel createChannel() throws IOException {
+        Channel channel = connection.createChannel();
+        PublishConfirmTracker confirmTracker = new PublishConfirmTracker(meterRegistry);
+        channel.addShutdownListener(confirmTracker::handleShutdown);
+        channel.addConfirmListener(confirmTracker);
+        channel.addReturnListener(confirmTracker);
+        channel.confirmSelect();
+        PooledChannel pooledChannel = new PooledChannel(channel, confirmTracker);
+        channels.add(pooledChannel);
+        return pooledChannel;
+    }
+
+    public PooledChannel borrow() throws IOException {
+        borrows.increment();
+        PooledChannel pooledChannel = idleChannels.poll();
+        if (pooledChannel != null) return pooledChannel;
+
+        contendedBorrows.increment();
+        long start = System.nanoTime();
+        try {
+            pooledChannel = idleChannels.poll(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a publishing channel");
+        } finally {
+            borrowWait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (pooledChannel == null) {
+            throw new IOException("No publishing channel available within " + borrowTimeout);
+        }
+        return pooledChannel;
+    }
+
+    /**
+     * Returns the channel to the pool. A channel that was closed by a channel error while the connection is still up
+     * will not be recovered automatically and is replaced.
+     */
+    public void release(PooledChannel pooledChannel) {
+        if (!pooledChannel.channel().isOpen() && connection.isOpen()) {
+            try {
+                channels.remove(pooledChannel);
+                pooledChannel = createChannel();
+            } catch (IOException e) {
+                Log.errorf("Failed to replace closed publishing channel: %s", e.getMessage());
+            }
+        }
+        idleChannels.add(pooledChannel);
+    }
+
+    public void close() {
+        for (PooledChannel pooledChannel : channels) {
+            if (!pooledChannel.channel().isOpen()) continue;
+            try {
+                pooledChannel.channel().close();
+            } catch (Exception e) {
+                Log.errorf("Error closing channel: %s", e.getMessage());
+            }
+        }
+    }
+
+    private static double outstandingConfirms(List<PooledChannel> channels) {
+        return channels.stream().mapToInt(pooledChannel -> pooledChannel.confirmTracker().outstandingCount()).sum();
+    }
+
+    public record PooledChannel(Channel channel, PublishConfirmTracker confirmTracker) {
+    }
+}
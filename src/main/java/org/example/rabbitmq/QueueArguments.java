@@ -0,0 +1,102 @@
+package org.example.rabbitmq;
+
+import org.example.host.Host;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the x-arguments of a host queue from the queue settings of its host.
+ * Settings a queue type does not support are rejected here rather than by the broker, which would close the channel.
+ */
+public final class QueueArguments {
+
+    public static final String QUEUE_TYPE = "x-queue-type";
+    public static final String STREAM_OFFSET = "x-stream-offset";
+
+    private static final Set<String> CLASSIC_OVERFLOW = Set.of("drop-head", "reject-publish", "reject-publish-dlx");
+    private static final Set<String> QUORUM_OVERFLOW = Set.of("drop-head", "reject-publish");
+
+    private QueueArguments() {
+    }
+
+    public static Map<String, Object> forHost(Host host) {
+        QueueType queueType = queueType(host);
+        Map<String, Object> arguments = new HashMap<>();
+        if (queueType != QueueType.CLASSIC) {
+            arguments.put(QUEUE_TYPE, queueType.name().toLowerCase(Locale.ROOT));
+        }
+        if (host.getMaxLengthBytes() != null) {
+            arguments.put("x-max-length-bytes", host.getMaxLengthBytes());
+        }
+
+        switch (queueType) {
+            case CLASSIC -> {
+                putMaxLength(host, arguments);
+                putOverflow(host, arguments, CLASSIC_OVERFLOW);
+                // Ignored by brokers from 3.12 on, where classic queues always page messages out to disk
+                if (Boolean.TRUE.equals(host.getLazy())) arguments.put("x-queue-mode", "lazy");
+            }
+            case QUORUM -> {
+                putMaxLength(host, arguments);
+                putOverflow(host, arguments, QUORUM_OVERFLOW);
+            }
+            case STREAM -> {
+                if (host.getMaxLength() != null || host.getOverflow() != null) {
+                    throw new IllegalArgumentException("Stream queue of host " + host.getName() + " only supports maxLengthBytes as limit");
+                }
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * The consumer arguments needed to subscribe to the host queue. Only streams need any, where the offset decides
+     * where in the stream consumption starts.
+     */
+    public static Map<String, Object> consumerArguments(Host host, Long nextOffset) {
+        if (queueType(host) != QueueType.STREAM) return Map.of();
+        if (nextOffset != null) return Map.of(STREAM_OFFSET, nextOffset);
+        return Map.of(STREAM_OFFSET, parseStreamOffset(host.getStreamOffset()));
+    }
+
+    public static QueueType queueType(Host host) {
+        if (host.getQueueType() == null || host.getQueueType().isBlank()) return QueueType.CLASSIC;
+        try {
+            return QueueType.valueOf(host.getQueueType().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown queue type " + host.getQueueType() + " for host " + host.getName());
+        }
+    }
+
+    /**
+     * Accepts the broker's offset specs first, last and next, or an absolute numeric offset. Without one a stream is
+     * read from the start, so nothing published before the first subscription or before a lost offset is skipped.
+     */
+    private static Object parseStreamOffset(String streamOffset) {
+        if (streamOffset == null || streamOffset.isBlank()) return "first";
+        String offset = streamOffset.trim();
+        if (offset.chars().allMatch(Character::isDigit)) return Long.parseLong(offset);
+        return offset;
+    }
+
+    private static void putMaxLength(Host host, Map<String, Object> arguments) {
+        if (host.getMaxLength() != null) arguments.put("x-max-length", host.getMaxLength());
+    }
+
+    private static void putOverflow(Host host, Map<String, Object> arguments, Set<String> supported) {
+        if (host.getOverflow() == null || host.getOverflow().isBlank()) return;
+        if (!supported.contains(host.getOverflow())) {
+            throw new IllegalArgumentException("Overflow " + host.getOverflow() + " is not supported by the queue of host " + host.getName());
+        }
+        arguments.put("x-overflow", host.getOverflow());
+    }
+
+    public enum QueueType {
+        CLASSIC,
+        QUORUM,
+        STREAM
+    }
+}
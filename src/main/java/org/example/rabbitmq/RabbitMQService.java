@@ -1,6 +1,7 @@
 package org.example.rabbitmq;
 
 import com.rabbitmq.client.*;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.quarkus.logging.Log;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
@@ -9,6 +10,18 @@ import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 @Startup
@@ -17,14 +30,44 @@ public class RabbitMQService {
 
     private static final ConnectionFactory CONNECTION_FACTORY = new ConnectionFactory();
     private static final String DEFAULT_EXCHANGE = "";
+    private static final String RETRY_COUNT_HEADER = "x-comint-retry-count";
 
-    private Connection connection;
-    private Channel channel;
+    private final Map<String, ConsumerChannel> consumerChannels = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Object>> declaredQueues = new ConcurrentHashMap<>();
+    // Registered queues whose redeclaration after a recovery failed, they are declared again on their next use
+    private final Set<String> undeclaredQueues = ConcurrentHashMap.newKeySet();
+    private final MeterRegistry meterRegistry;
+    private final int publisherChannelPoolSize;
+    private final Duration publisherBorrowTimeout;
+    private final int ackBatchSize;
+    private final Duration ackMaxDelay;
+    private final List<Duration> retryDelays;
+    private final Duration drainTimeout;
+
+    private Connection publisherConnection;
+    private Connection consumerConnection;
+    private PublisherChannelPool publisherChannelPool;
+    private ExecutorService consumerExecutor;
+    private ScheduledExecutorService ackFlusher;
 
     public RabbitMQService(
             @ConfigProperty(name = "rabbitmq.host", defaultValue = "localhost") String host,
-            @ConfigProperty(name = "rabbitmq.port", defaultValue = "5672") int port
+            @ConfigProperty(name = "rabbitmq.port", defaultValue = "5672") int port,
+            @ConfigProperty(name = "rabbitmq.ack.batch-size", defaultValue = "32") int ackBatchSize,
+            @ConfigProperty(name = "rabbitmq.ack.max-delay", defaultValue = "100ms") Duration ackMaxDelay,
+            @ConfigProperty(name = "rabbitmq.publisher.channel-pool-size") Optional<Integer> publisherChannelPoolSize,
+            @ConfigProperty(name = "rabbitmq.publisher.borrow-timeout", defaultValue = "5s") Duration publisherBorrowTimeout,
+            @ConfigProperty(name = "rabbitmq.retry.delays", defaultValue = "10s,1m,5m,15m") List<Duration> retryDelays,
+            @ConfigProperty(name = "rabbitmq.consumer.drain-timeout", defaultValue = "10s") Duration drainTimeout,
+            MeterRegistry meterRegistry
     ) {
+        this.meterRegistry = meterRegistry;
+        this.publisherChannelPoolSize = publisherChannelPoolSize.orElse(Runtime.getRuntime().availableProcessors());
+        this.publisherBorrowTimeout = publisherBorrowTimeout;
+        this.ackBatchSize = ackBatchSize;
+        this.ackMaxDelay = ackMaxDelay;
+        this.retryDelays = List.copyOf(retryDelays);
+        this.drainTimeout = drainTimeout;
         CONNECTION_FACTORY.setHost(host);
         CONNECTION_FACTORY.setPort(port);
         CONNECTION_FACTORY.setAutomaticRecoveryEnabled(true);
@@ -36,23 +79,50 @@ public class RabbitMQService {
     @PostConstruct
     void init() {
         establishConnection();
+        startAckFlusher();
     }
 
+    /**
+     * Publishing and consuming use separate connections, so that broker flow control throttling the publishers does
+     * not also stall the consumers.
+     */
     private void establishConnection() {
         Log.info("***** Establishing connection *****");
         try {
-            connection = CONNECTION_FACTORY.newConnection();
-            connection.addShutdownListener(this::onConnectionShutdown);
-            channel = connection.createChannel();
-            channel.addShutdownListener(this::onChannelShutdown);
-            addRecoveryListener();
-            Log.info("Successfully established RabbitMQ connection and channel");
+            publisherConnection = CONNECTION_FACTORY.newConnection("comint-publisher");
+            publisherConnection.addShutdownListener(this::onConnectionShutdown);
+            publisherChannelPool = new PublisherChannelPool(publisherConnection, publisherChannelPoolSize, publisherBorrowTimeout, meterRegistry);
+            addRecoveryListener(publisherConnection, this::redeclareQueues);
+
+            // Unbounded so that a channel blocked by a slow host never holds up dispatch for the other channels
+            consumerExecutor = Executors.newCachedThreadPool(Thread.ofPlatform().name("rabbitmq-consumer-", 0).factory());
+            consumerConnection = CONNECTION_FACTORY.newConnection(consumerExecutor, "comint-consumer");
+            consumerConnection.addShutdownListener(this::onConnectionShutdown);
+            // Consumers and their channels are restored by the client's topology recovery
+            addRecoveryListener(consumerConnection, () -> Log.infof("Restored %d consumer channels", consumerChannels.size()));
+            Log.infof("Successfully established RabbitMQ connections with %d publishing channels", publisherChannelPoolSize);
         } catch (IOException | TimeoutException e) {
             Log.error("Failed to establish RabbitMQ channel. Make sure the broker is running");
             throw new RuntimeException(e);
         }
     }
 
+    private void startAckFlusher() {
+        ackFlusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("rabbitmq-ack-flusher").factory());
+        long delay = ackMaxDelay.toNanos();
+        ackFlusher.scheduleWithFixedDelay(this::flushDueAcks, delay, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private void flushDueAcks() {
+        consumerChannels.forEach((hostName, consumerChannel) -> {
+            try {
+                consumerChannel.ackCoalescer().flushIfDue();
+            } catch (Exception e) {
+                Log.errorf("Failed to flush acknowledgements for host %s: %s", hostName, e.getMessage());
+            }
+        });
+    }
+
     private void onConnectionShutdown(ShutdownSignalException cause) {
         if (!cause.isInitiatedByApplication()) {
             Log.error("RabbitMQ connection was unexpectedly shut down");
@@ -69,111 +139,417 @@ public class RabbitMQService {
         }
     }
 
-    private void addRecoveryListener() {
+    private void addRecoveryListener(Connection connection, Runnable onRecovery) {
         ((Recoverable) connection).addRecoveryListener(new RecoveryListener() {
             @Override
             public void handleRecovery(Recoverable recoverable) {
-                Log.info("RabbitMQ connection has been recovered.");
+                Log.infof("RabbitMQ connection %s has been recovered.", connection.getClientProvidedName());
+                onRecovery.run();
             }
 
             @Override
             public void handleRecoveryStarted(Recoverable recoverable) {
-                Log.info("RabbitMQ connection recovery has started.");
+                Log.infof("RabbitMQ connection %s recovery has started.", connection.getClientProvidedName());
             }
         });
     }
 
-    public void publish(String hostName, String messageId, String messageType, byte[] message) {
-        if (isChannelDead()) {
+    /**
+     * Publishes a persistent message to the queue of the given host. The returned future completes once the broker has
+     * confirmed the message and fails if it was nacked, returned as unroutable or the channel went down in between.
+     */
+    public CompletableFuture<Void> publish(String hostName, String messageId, String messageType, Map<String, Object> headers, PayloadEncoding.Encoded message) {
+        AMQP.BasicProperties properties = MessageProperties.MINIMAL_PERSISTENT_BASIC.builder()
+                .type(messageType)
+                .messageId(messageId)
+                .contentEncoding(message.contentEncoding())
+                .headers(headers)
+                .build();
+        return publish(DEFAULT_EXCHANGE, hostName, properties, message.payload());
+    }
+
+    /**
+     * Publishes a persistent message to an exchange, which routes it by its headers. Like {@link #publish(String, String,
+     * String, Map, PayloadEncoding.Encoded)}, the future only completes once every queue the message was routed to has
+     * taken it, and fails if it was routed to none.
+     */
+    public CompletableFuture<Void> publishToExchange(String exchange, String messageId, String messageType, Map<String, Object> headers, PayloadEncoding.Encoded message) {
+        AMQP.BasicProperties properties = MessageProperties.MINIMAL_PERSISTENT_BASIC.builder()
+                .type(messageType)
+                .messageId(messageId)
+                .contentEncoding(message.contentEncoding())
+                .headers(headers)
+                .build();
+        return publish(exchange, "", properties, message.payload());
+    }
+
+    /**
+     * Parks a delivery that could not be delivered in the retry queue of its next backoff tier. Once the tier's delay
+     * has expired the broker dead-letters it back into the host queue. Messages that have been through every tier keep
+     * cycling through the last one.
+     */
+    public CompletableFuture<Void> publishForRetry(String hostName, AMQP.BasicProperties properties, byte[] message) {
+        int retryCount = getRetryCount(properties);
+        String retryQueue = retryQueueName(hostName, Math.min(retryCount, retryDelays.size() - 1));
+        Map<String, Object> headers = properties.getHeaders() != null ? new HashMap<>(properties.getHeaders()) : new HashMap<>();
+        headers.put(RETRY_COUNT_HEADER, retryCount + 1);
+        if (!declaredQueues.containsKey(retryQueue)) {
+            // Declaring it without its arguments would create a queue that never dead-letters back
+            declareRetryQueues(hostName);
+        }
+        Log.infof("Scheduling retry %d of message %s through %s", retryCount + 1, properties.getMessageId(), retryQueue);
+        return publish(DEFAULT_EXCHANGE, retryQueue, properties.builder().headers(headers).build(), message);
+    }
+
+    private static int getRetryCount(AMQP.BasicProperties properties) {
+        Object retryCount = properties.getHeaders() != null ? properties.getHeaders().get(RETRY_COUNT_HEADER) : null;
+        return retryCount instanceof Number number ? number.intValue() : 0;
+    }
+
+    private CompletableFuture<Void> publish(String exchange, String routingKey, AMQP.BasicProperties properties, byte[] message) {
+        if (isPublisherConnectionDead()) {
             Log.error("RabbitMQ connection is not ready for publishing messages.");
-            return;
+            return CompletableFuture.failedFuture(new IOException("RabbitMQ publisher connection is not open"));
         }
 
-        declareQueueIfAbsent(hostName);
+        if (DEFAULT_EXCHANGE.equals(exchange)) {
+            try {
+                ensureDeclared(routingKey);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
 
+        PublisherChannelPool.PooledChannel pooledChannel;
         try {
-            AMQP.BasicProperties properties = MessageProperties.MINIMAL_PERSISTENT_BASIC.builder()
-                    .type(messageType)
-                    .messageId(messageId)
-                    .build();
-            channel.basicPublish(DEFAULT_EXCHANGE, hostName, true, properties, message);
-            Log.debugf("Successfully published message to queue: %s", hostName);
-        } catch (Exception e) {
+            pooledChannel = publisherChannelPool.borrow();
+        } catch (IOException e) {
             Log.errorf("Failed to publish message to queue: %s", e.getMessage());
-            throw new RuntimeException(e);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        try {
+            Channel channel = pooledChannel.channel();
+            long sequenceNumber = channel.getNextPublishSeqNo();
+            CompletableFuture<Void> confirm = pooledChannel.confirmTracker().register(sequenceNumber);
+            try {
+                channel.basicPublish(exchange, routingKey, true, properties, message);
+                Log.debugf("Published message to exchange '%s' with routing key '%s' and sequence number %d", exchange, routingKey, sequenceNumber);
+            } catch (Exception e) {
+                Log.errorf("Failed to publish message to queue: %s", e.getMessage());
+                pooledChannel.confirmTracker().cancel(sequenceNumber, e);
+            }
+            return confirm;
+        } finally {
+            publisherChannelPool.release(pooledChannel);
         }
     }
 
-    public String consume(String hostName, Consumer callback) {
-        if (isChannelDead()) {
-            Log.error("RabbitMQ channel ist not ready to add consumers");
+    /**
+     * Starts consuming the queue of the given host on a channel of its own. The prefetch count limits the number of
+     * unacknowledged messages the broker pushes to that channel, so a backlog stays in the broker instead of our heap.
+     */
+    public void consume(String hostName, int prefetchCount, String consumerTag, Map<String, Object> arguments, Consumer callback) {
+        if (consumerConnection == null || !consumerConnection.isOpen()) {
+            Log.error("RabbitMQ connection is not ready to add consumers");
             throw new RuntimeException();
         }
 
-        declareQueueIfAbsent(hostName);
+        ensureDeclared(hostName);
 
         try {
-            return channel.basicConsume(hostName, callback);
+            Channel consumerChannel = getOrCreateConsumerChannel(hostName, prefetchCount).channel();
+            consumerChannel.basicQos(prefetchCount);
+            consumerChannel.basicConsume(hostName, false, consumerTag, false, false, arguments, callback);
         } catch (IOException e) {
             Log.errorf("Failed to start consumer for queue: %s", hostName);
             throw new RuntimeException(e);
         }
     }
 
-    public void ack(long deliveryTag) {
-        boolean multiple = false;
+    /**
+     * Stops the broker from delivering further messages of the host. Deliveries already in flight are still settled
+     * on the host channel, which stays open for the next subscription.
+     */
+    public void cancelConsumer(String hostName, String consumerTag) {
+        try {
+            getConsumerChannel(hostName).channel().basicCancel(consumerTag);
+        } catch (IOException e) {
+            Log.errorf("Failed to cancel consumer for queue: %s", hostName);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Forgets a host that stopped consuming. Its channel is closed once the deliveries in flight on it are settled, or
+     * after the drain timeout, when the broker requeues what is left. Its queues are no longer redeclared after a
+     * recovery, they stay on the broker with their messages.
+     */
+    public void releaseHost(String hostName) {
+        forgetQueue(hostName);
+        for (int tier = 0; tier < retryDelays.size(); tier++) {
+            forgetQueue(retryQueueName(hostName, tier));
+        }
+
+        ConsumerChannel consumerChannel = consumerChannels.get(hostName);
+        if (consumerChannel == null) return;
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        try {
+            while (consumerChannel.ackCoalescer().hasInFlight() && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (consumerChannel.ackCoalescer().hasInFlight()) {
+            Log.warnf("Closing channel of host %s with deliveries still in flight, they are requeued", hostName);
+        }
+        consumerChannels.remove(hostName, consumerChannel);
+        closeConsumerChannel(consumerChannel);
+    }
+
+    private void forgetQueue(String queueName) {
+        declaredQueues.remove(queueName);
+        undeclaredQueues.remove(queueName);
+    }
+
+    private ConsumerChannel getOrCreateConsumerChannel(String hostName, int prefetchCount) throws IOException {
+        ConsumerChannel consumerChannel = consumerChannels.get(hostName);
+        if (consumerChannel != null && consumerChannel.channel().isOpen()) {
+            return consumerChannel;
+        }
+        Channel hostChannel = consumerConnection.createChannel();
+        // A batch as large as the prefetch window would stall deliveries until the next timed flush
+        int batchSize = Math.min(ackBatchSize, Math.max(1, prefetchCount / 2));
+        AckCoalescer ackCoalescer = new AckCoalescer(hostChannel::basicAck, batchSize, ackMaxDelay.toNanos());
+        hostChannel.addShutdownListener(this::onChannelShutdown);
+        hostChannel.addShutdownListener(cause -> ackCoalescer.reset());
+        consumerChannel = new ConsumerChannel(hostChannel, ackCoalescer);
+        consumerChannels.put(hostName, consumerChannel);
+        return consumerChannel;
+    }
+
+    /**
+     * Registers a delivery as in flight. Must be called in delivery order, before the delivery is settled.
+     */
+    public void trackDelivery(String hostName, long deliveryTag) {
+        try {
+            getConsumerChannel(hostName).ackCoalescer().track(deliveryTag);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void ack(String hostName, long deliveryTag) {
         try {
-            channel.basicAck(deliveryTag, multiple);
+            getConsumerChannel(hostName).ackCoalescer().ack(deliveryTag);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void nack(long deliveryTag) {
+    /**
+     * Streams never remove messages, there a nack or reject only releases the delivery like an ack would.
+     */
+    public void nack(String hostName, long deliveryTag) {
+        if (isStream(hostName)) {
+            ack(hostName, deliveryTag);
+            return;
+        }
         boolean multiple = false;
         boolean requeue = false;
         try {
-            channel.basicNack(deliveryTag, multiple, requeue);
+            ConsumerChannel consumerChannel = getConsumerChannel(hostName);
+            consumerChannel.ackCoalescer().settle(deliveryTag, () -> consumerChannel.channel().basicNack(deliveryTag, multiple, requeue));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    public void reject(long deliveryTag) {
+    /**
+     * Returns the delivery to the queue for another consumer. On a stream it is released instead, a later subscription
+     * reads it again from its offset.
+     */
+    public void requeue(String hostName, long deliveryTag) {
+        if (isStream(hostName)) {
+            ack(hostName, deliveryTag);
+            return;
+        }
+        boolean multiple = false;
+        boolean requeue = true;
+        try {
+            ConsumerChannel consumerChannel = getConsumerChannel(hostName);
+            consumerChannel.ackCoalescer().settle(deliveryTag, () -> consumerChannel.channel().basicNack(deliveryTag, multiple, requeue));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void reject(String hostName, long deliveryTag) {
+        if (isStream(hostName)) {
+            ack(hostName, deliveryTag);
+            return;
+        }
         boolean requeue = false;
         try {
-            channel.basicReject(deliveryTag, requeue);
+            ConsumerChannel consumerChannel = getConsumerChannel(hostName);
+            consumerChannel.ackCoalescer().settle(deliveryTag, () -> consumerChannel.channel().basicReject(deliveryTag, requeue));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private void declareQueueIfAbsent(String queueName) {
-        if (isChannelDead()) {
-            Log.error("RabbitMQ channel is not ready to declare queues");
+    private ConsumerChannel getConsumerChannel(String hostName) throws IOException {
+        ConsumerChannel consumerChannel = consumerChannels.get(hostName);
+        if (consumerChannel == null) {
+            throw new IOException("No consumer channel for host " + hostName);
+        }
+        return consumerChannel;
+    }
+
+    /**
+     * Declares the queue and remembers it, so that publishing to it does not need a queueDeclare round trip.
+     */
+    public void declareQueue(String queueName) {
+        declareQueue(queueName, Map.of());
+    }
+
+    /**
+     * Declares one delay queue per backoff tier. Each has a fixed message TTL, so expired messages are always at the
+     * head of their queue, and dead-letters expired messages back into the host queue through the default exchange.
+     */
+    public void declareRetryQueues(String hostName) {
+        for (int tier = 0; tier < retryDelays.size(); tier++) {
+            Map<String, Object> arguments = Map.of(
+                    "x-message-ttl", retryDelays.get(tier).toMillis(),
+                    "x-dead-letter-exchange", DEFAULT_EXCHANGE,
+                    "x-dead-letter-routing-key", hostName
+            );
+            declareQueue(retryQueueName(hostName, tier), arguments);
+        }
+    }
+
+    private static String retryQueueName(String hostName, int tier) {
+        return hostName + ".retry." + tier;
+    }
+
+    public void declareQueue(String queueName, Map<String, Object> arguments) {
+        if (isPublisherConnectionDead()) {
+            Log.error("RabbitMQ connection is not ready to declare queues");
             return;
         }
 
+        PublisherChannelPool.PooledChannel pooledChannel = null;
         try {
-            channel.queueDeclare(queueName, true, false, false, null);
+            pooledChannel = publisherChannelPool.borrow();
+            pooledChannel.channel().queueDeclare(queueName, true, false, false, arguments.isEmpty() ? null : arguments);
+            declaredQueues.put(queueName, arguments);
+            undeclaredQueues.remove(queueName);
         } catch (IOException e) {
             Log.errorf("Failed to declare queue: %s", e.getMessage());
             throw new RuntimeException(e);
+        } finally {
+            if (pooledChannel != null) publisherChannelPool.release(pooledChannel);
         }
     }
 
-    private boolean isChannelDead() {
-        return channel == null || !channel.isOpen();
+    /**
+     * Declares a durable exchange. Exchanges and bindings are restored by the client's topology recovery.
+     */
+    public void declareExchange(String exchange, BuiltinExchangeType type) {
+        withPublisherChannel("declare exchange " + exchange, channel -> channel.exchangeDeclare(exchange, type, true));
+    }
+
+    public void bindQueue(String queueName, String exchange, Map<String, Object> arguments) {
+        withPublisherChannel("bind queue " + queueName, channel -> channel.queueBind(queueName, exchange, "", arguments));
+    }
+
+    /**
+     * The arguments must be the ones the queue was bound with, they are part of what identifies the binding.
+     */
+    public void unbindQueue(String queueName, String exchange, Map<String, Object> arguments) {
+        withPublisherChannel("unbind queue " + queueName, channel -> channel.queueUnbind(queueName, exchange, "", arguments));
+    }
+
+    private void withPublisherChannel(String operation, ChannelOperation channelOperation) {
+        if (isPublisherConnectionDead()) {
+            throw new RuntimeException("RabbitMQ connection is not ready to " + operation);
+        }
+
+        PublisherChannelPool.PooledChannel pooledChannel = null;
+        try {
+            pooledChannel = publisherChannelPool.borrow();
+            channelOperation.run(pooledChannel.channel());
+        } catch (IOException e) {
+            Log.errorf("Failed to %s: %s", operation, e.getMessage());
+            throw new RuntimeException(e);
+        } finally {
+            if (pooledChannel != null) publisherChannelPool.release(pooledChannel);
+        }
+    }
+
+    private boolean isStream(String queueName) {
+        Map<String, Object> arguments = declaredQueues.get(queueName);
+        return arguments != null && "stream".equals(arguments.get(QueueArguments.QUEUE_TYPE));
+    }
+
+    /**
+     * Only queues declared with their arguments before are declared again. Declaring an unknown queue without them
+     * would fail for a host queue with other settings, or create a plain classic queue in place of one the broker lost.
+     */
+    private void ensureDeclared(String queueName) {
+        Map<String, Object> arguments = declaredQueues.get(queueName);
+        if (arguments == null) {
+            throw new IllegalStateException("Queue " + queueName + " was never declared");
+        }
+        if (undeclaredQueues.contains(queueName)) {
+            declareQueue(queueName, arguments);
+        }
+    }
+
+    /**
+     * The broker may have lost queues while the connection was down, so every registered queue is declared again with
+     * its arguments. The registry stays intact meanwhile, queues that fail here are declared again on their next use.
+     */
+    private void redeclareQueues() {
+        int redeclared = 0;
+        for (Map.Entry<String, Map<String, Object>> queue : declaredQueues.entrySet()) {
+            try {
+                declareQueue(queue.getKey(), queue.getValue());
+                redeclared++;
+            } catch (RuntimeException e) {
+                undeclaredQueues.add(queue.getKey());
+                Log.errorf("Failed to redeclare queue %s after recovery", queue.getKey());
+            }
+        }
+        Log.infof("Redeclared %d queues after recovery", redeclared);
+    }
+
+    private boolean isPublisherConnectionDead() {
+        return publisherConnection == null || !publisherConnection.isOpen();
     }
 
     @PreDestroy
     void destroy() {
-        closeChannel();
-        closeConnection();
+        if (ackFlusher != null) ackFlusher.shutdown();
+        consumerChannels.values().forEach(this::closeConsumerChannel);
+        if (publisherChannelPool != null) publisherChannelPool.close();
+        closeConnection(consumerConnection);
+        closeConnection(publisherConnection);
+        if (consumerExecutor != null) consumerExecutor.shutdown();
+    }
+
+    private void closeConsumerChannel(ConsumerChannel consumerChannel) {
+        try {
+            consumerChannel.ackCoalescer().flush();
+        } catch (Exception e) {
+            Log.errorf("Error flushing acknowledgements: %s", e.getMessage());
+        }
+        closeChannel(consumerChannel.channel());
     }
 
-    private void closeChannel() {
-        if (isChannelDead()) return;
+    private void closeChannel(Channel channel) {
+        if (channel == null || !channel.isOpen()) return;
         try {
             channel.close();
         } catch (Exception e) {
@@ -181,7 +557,7 @@ public class RabbitMQService {
         }
     }
 
-    private void closeConnection() {
+    private void closeConnection(Connection connection) {
         if (connection != null && connection.isOpen()) {
             try {
                 connection.close();
@@ -190,4 +566,12 @@ public class RabbitMQService {
             }
         }
     }
+
+    @FunctionalInterface
+    private interface ChannelOperation {
+        void run(Channel channel) throws IOException;
+    }
+
+    private record ConsumerChannel(Channel channel, AckCoalescer ackCoalescer) {
+    }
 }
@@ -0,0 +1,136 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.MessageHeader;
+import org.example.routing.Route;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A headers exchange with one binding per route, so that the broker picks the host queues of a message instead of the
+ * {@link org.example.routing.RoutingTable}. A binding matches all of its routing headers: an exact pattern binds the
+ * header to its value and {@code *} binds it without a value, which the broker matches against any present value.
+ * An absent pattern leaves the header out of the binding, so unlike in the routing table it matches any value too.
+ * <p>
+ * The routing headers have no {@code x-} prefix, as the broker ignores those when matching.
+ */
+@ApplicationScoped
+public class RoutingExchange {
+
+    static final String MESSAGE_TYPE = "comint-message-type";
+    static final String MESSAGE_TYPE_VERSION = "comint-message-type-version";
+    static final String RECIPIENT = "comint-recipient";
+    private static final String WILDCARD = "*";
+
+    private final RabbitMQService rabbitMQService;
+    private final String exchange;
+    private final ReentrantLock bindLock = new ReentrantLock();
+    private Set<Binding> bindings = Set.of();
+    private boolean declared;
+
+    public RoutingExchange(
+            RabbitMQService rabbitMQService,
+            @ConfigProperty(name = "comint.routing.broker.exchange", defaultValue = "comint.routing") String exchange
+    ) {
+        this.rabbitMQService = rabbitMQService;
+        this.exchange = exchange;
+    }
+
+    public String name() {
+        return exchange;
+    }
+
+    /**
+     * Brings the bindings of the exchange in line with the routes. Routes to destinations without a host queue are
+     * left out, bindings of routes that are gone are removed. A binding that fails is tried again on the next call.
+     */
+    public void bind(List<Route> routes, Predicate<String> hasQueue) {
+        bindLock.lock();
+        try {
+            if (!declared) {
+                rabbitMQService.declareExchange(exchange, BuiltinExchangeType.HEADERS);
+                declared = true;
+            }
+
+            Set<Binding> wanted = new LinkedHashSet<>();
+            for (Binding binding : compile(routes)) {
+                if (hasQueue.test(binding.queue())) {
+                    wanted.add(binding);
+                } else {
+                    Log.errorf("Failed to find host for destination '%s', not binding it", binding.queue());
+                }
+            }
+
+            Set<Binding> bound = new LinkedHashSet<>(bindings);
+            for (Binding binding : bindings) {
+                if (wanted.contains(binding)) continue;
+                try {
+                    rabbitMQService.unbindQueue(binding.queue(), exchange, binding.arguments());
+                    bound.remove(binding);
+                } catch (RuntimeException e) {
+                    Log.errorf("Failed to unbind queue %s from %s: %s", binding.queue(), exchange, e.getMessage());
+                }
+            }
+            for (Binding binding : wanted) {
+                if (bound.contains(binding)) continue;
+                try {
+                    rabbitMQService.bindQueue(binding.queue(), exchange, binding.arguments());
+                    bound.add(binding);
+                } catch (RuntimeException e) {
+                    Log.errorf("Failed to bind queue %s to %s: %s", binding.queue(), exchange, e.getMessage());
+                }
+            }
+            bindings = bound;
+            Log.infof("Bound %d routes to exchange %s", bound.size(), exchange);
+        } finally {
+            bindLock.unlock();
+        }
+    }
+
+    static Set<Binding> compile(List<Route> routes) {
+        Set<Binding> bindings = new LinkedHashSet<>();
+        for (Route route : routes) {
+            Map<String, Object> arguments = new HashMap<>();
+            arguments.put("x-match", "all");
+            putPattern(arguments, MESSAGE_TYPE, route.getMessageType());
+            putPattern(arguments, MESSAGE_TYPE_VERSION, route.getMessageTypeVersion());
+            putPattern(arguments, RECIPIENT, route.getRecipient());
+            bindings.add(new Binding(route.getDestination(), Collections.unmodifiableMap(arguments)));
+        }
+        return bindings;
+    }
+
+    /**
+     * A null value is sent as a void field, which the broker takes as "header present with any value".
+     */
+    private static void putPattern(Map<String, Object> arguments, String key, String pattern) {
+        if (pattern == null || pattern.isEmpty()) return;
+        arguments.put(key, WILDCARD.equals(pattern) ? null : pattern);
+    }
+
+    /**
+     * Adds the headers the bindings match on, only for the fields the message has.
+     */
+    static void putRoutingHeaders(Map<String, Object> headers, MessageHeader messageHeader) {
+        putIfPresent(headers, MESSAGE_TYPE, messageHeader.messageType());
+        putIfPresent(headers, MESSAGE_TYPE_VERSION, messageHeader.messageTypeVersion());
+        putIfPresent(headers, RECIPIENT, messageHeader.recipient());
+    }
+
+    private static void putIfPresent(Map<String, Object> headers, String key, String value) {
+        if (value != null) headers.put(key, value);
+    }
+
+    record Binding(String queue, Map<String, Object> arguments) {
+    }
+}
@@ -0,0 +1,180 @@
+package org.example.rabbitmq;
+
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Tracks how far the stream of each host has been consumed. A paused consumer resumes after the last delivery it
+ * received. Across restarts the offset is kept in {@code comint.stream.offset-directory}, there it is the lowest offset
+ * still in flight, so deliveries that were not settled before a restart are delivered again rather than skipped.
+ */
+@ApplicationScoped
+public class StreamOffsets {
+
+    private static final String SUFFIX = ".offset";
+
+    private final Optional<Path> offsetDirectory;
+    private final Map<String, Tracker> trackers = new ConcurrentHashMap<>();
+
+    public StreamOffsets(@ConfigProperty(name = "comint.stream.offset-directory") Optional<String> offsetDirectory) {
+        this.offsetDirectory = offsetDirectory.map(Path::of);
+    }
+
+    /**
+     * @return The offset to resume the stream of the host at, or null if it was never consumed
+     */
+    public Long nextOffset(String hostName) {
+        Tracker tracker = trackers.get(hostName);
+        Long next = tracker != null ? tracker.resumeOffset() : null;
+        return next != null ? next : load(hostName);
+    }
+
+    /**
+     * Must be called in delivery order, before the delivery is handed off.
+     */
+    public void received(String hostName, long offset) {
+        trackers.computeIfAbsent(hostName, k -> new Tracker()).received(offset);
+    }
+
+    /**
+     * Makes the next subscription start at the given offset again, if it is before where it would start otherwise.
+     */
+    public void rewind(String hostName, long offset) {
+        Tracker tracker = trackers.get(hostName);
+        if (tracker != null) tracker.rewind(offset);
+    }
+
+    public void settled(String hostName, long offset) {
+        Tracker tracker = trackers.get(hostName);
+        if (tracker != null) tracker.settled(offset);
+    }
+
+    @Scheduled(every = "${comint.stream.offset-flush-interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void flush() {
+        if (offsetDirectory.isEmpty()) return;
+        trackers.forEach((hostName, tracker) -> {
+            Long offset = tracker.unstoredOffset();
+            if (offset == null) return;
+            try {
+                store(hostName, offset);
+                tracker.stored(offset);
+            } catch (IOException e) {
+                Log.errorf("Failed to store stream offset of host %s: %s", hostName, e.getMessage());
+            }
+        });
+    }
+
+    @PreDestroy
+    void destroy() {
+        flush();
+    }
+
+    private Long load(String hostName) {
+        if (offsetDirectory.isEmpty()) return null;
+        Path file = offsetDirectory.get().resolve(hostName + SUFFIX);
+        try {
+            return Long.parseLong(Files.readString(file, StandardCharsets.US_ASCII).trim());
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | NumberFormatException e) {
+            Log.errorf("Failed to read stream offset of host %s, starting at its configured offset: %s", hostName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Written to a temporary file first, so a crash never leaves a partly written offset behind.
+     */
+    private void store(String hostName, long offset) throws IOException {
+        Path directory = offsetDirectory.orElseThrow();
+        Files.createDirectories(directory);
+        Path temporary = Files.writeString(directory.resolve(hostName + SUFFIX + ".tmp"), Long.toString(offset), StandardCharsets.US_ASCII);
+        Files.move(temporary, directory.resolve(hostName + SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Tracker {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final TreeSet<Long> inFlight = new TreeSet<>();
+        private long lastReceived = -1;
+        private long lastStored = -1;
+        private long rewoundTo = Long.MAX_VALUE;
+
+        void received(long offset) {
+            lock.lock();
+            try {
+                inFlight.add(offset);
+                lastReceived = Math.max(lastReceived, offset);
+                // Deliveries of the previous subscription may still come in after the offset was rewound
+                if (offset <= rewoundTo) rewoundTo = Long.MAX_VALUE;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void rewind(long offset) {
+            lock.lock();
+            try {
+                rewoundTo = Math.min(rewoundTo, offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void settled(long offset) {
+            lock.lock();
+            try {
+                inFlight.remove(offset);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Long resumeOffset() {
+            lock.lock();
+            try {
+                return lastReceived < 0 ? null : Math.min(lastReceived + 1, rewoundTo);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return The offset every delivery before has been settled up to, or null if it is already stored
+         */
+        Long unstoredOffset() {
+            lock.lock();
+            try {
+                if (lastReceived < 0) return null;
+                long offset = Math.min(inFlight.isEmpty() ? lastReceived + 1 : inFlight.first(), rewoundTo);
+                return offset == lastStored ? null : offset;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void stored(long offset) {
+            lock.lock();
+            try {
+                lastStored = offset;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -1,72 +1,128 @@
 package org.example.routing;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import io.quarkus.logging.Log;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.example.MessageExtractor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.MessageHeader;
+import org.example.config.ConfigurationFiles;
 import org.example.host.Host;
 import org.example.host.HostService;
 import org.example.logging.MdcKeys;
-import org.example.util.CsvFileReader;
+import org.example.rabbitmq.RoutingExchange;
 import org.jboss.logmanager.MDC;
-import org.w3c.dom.Element;
 
 import java.util.List;
 import java.util.Optional;
 
+// Started eagerly so that the routing exchange is bound before the first message is published to it
+@Startup
 @ApplicationScoped
 public class RoutingService {
 
-    private static final String ROUTING_FILE = "routing.csv";
+    public static final String ROUTING_FILE = "routing.csv";
 
     private final HostService hostService;
-    private final MessageExtractor messageExtractor;
-    private final List<Route> routes = CsvFileReader.readFile(ROUTING_FILE, Route.class);
+    private final RoutingExchange routingExchange;
+    private final boolean routedByBroker;
+    // Replaced as a whole on reload, so lookups need no lock
+    private volatile List<Route> routes;
+    private volatile RoutingTable routingTable;
+    // Traffic has few distinct criteria, so most messages are resolved here, including those without a route
+    private final Cache<RoutingCriteria, Optional<Host>> resolvedHosts;
 
     public RoutingService(
+            ConfigurationFiles configurationFiles,
             HostService hostService,
-            MessageExtractor messageExtractor
+            RoutingExchange routingExchange,
+            MeterRegistry meterRegistry,
+            @ConfigProperty(name = "comint.routing.cache.max-size", defaultValue = "10000") long maxSize,
+            @ConfigProperty(name = "comint.routing.broker.enabled", defaultValue = "false") boolean routedByBroker
     ) {
         this.hostService = hostService;
-        this.messageExtractor = messageExtractor;
+        this.routingExchange = routingExchange;
+        this.routedByBroker = routedByBroker;
+        this.routes = configurationFiles.read(ROUTING_FILE, Route.class);
+        this.routingTable = RoutingTable.compile(routes);
+        this.resolvedHosts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resolvedHosts, "routing");
     }
 
-    public Host findHost(Element message) {
-        RoutingCriteria routingCriteria = messageExtractor.extractRoutingCriteria(message);
+    @PostConstruct
+    void init() {
+        bindRoutes();
+    }
+
+    /**
+     * When routed by the broker, messages are published once to the routing exchange, which hands a copy to the queue
+     * of every matching route, and {@link #findHost(MessageHeader)} is not used.
+     */
+    public boolean isRoutedByBroker() {
+        return routedByBroker;
+    }
+
+    public Host findHost(MessageHeader messageHeader) {
+        RoutingCriteria routingCriteria = messageHeader.routingCriteria();
         Log.debug(routingCriteria);
 
-        String destination = getDestination(routingCriteria);
+        Optional<Host> host = resolvedHosts.get(routingCriteria, this::resolveHost);
+        if (host.isEmpty()) {
+            Log.errorf("No host to route %s to", routingCriteria);
+            return null;
+        }
+
+        MDC.put(MdcKeys.HOST_NAME, host.get().getName());
+        return host.get();
+    }
+
+    private Optional<Host> resolveHost(RoutingCriteria routingCriteria) {
+        String destination = routingTable.getDestination(routingCriteria);
         if (destination == null) {
             Log.errorf("Failed to find destination for %s", routingCriteria.toString());
-            return null;
+            return Optional.empty();
         }
 
         Optional<Host> host = hostService.getHost(destination);
         if (host.isEmpty()) {
             Log.errorf("Failed to find host for destination '%s'", destination);
-            return null;
         }
+        return host;
+    }
 
-        MDC.put(MdcKeys.HOST_NAME, host.get().getName());
-        return host.get();
+    public void reload(List<Route> routes) {
+        this.routes = routes;
+        routingTable = RoutingTable.compile(routes);
+        refresh();
+        Log.infof("Reloaded %d routes", routes.size());
     }
 
-    private String getDestination(RoutingCriteria routingCriteria) {
-        return routes.stream()
-                .filter(route -> matches(route.getMessageType(), routingCriteria.messageType()))
-                .filter(route -> matches(route.getMessageTypeVersion(), routingCriteria.messageTypeVersion()))
-                .filter(route -> matches(route.getRecipient(), routingCriteria.recipient()))
-                .map(Route::getDestination)
-                .findFirst()
-                .orElse(null);
+    /**
+     * Drops all resolved hosts and rebinds the routing exchange, as routes may lead to hosts that were added, replaced
+     * or removed. To be called whenever routes or hosts change.
+     */
+    public void refresh() {
+        invalidate();
+        bindRoutes();
     }
 
-    private boolean matches(String pattern, String value) {
-        if (pattern == null || value == null) {
-            return pattern == null && value == null;
-        }
-        if (pattern.equals("*")) {
-            return true;
+    public void invalidate() {
+        resolvedHosts.invalidateAll();
+    }
+
+    private void bindRoutes() {
+        if (!routedByBroker) return;
+        try {
+            routingExchange.bind(routes, destination -> hostService.getHost(destination).isPresent());
+        } catch (RuntimeException e) {
+            Log.errorf("Failed to bind routes to exchange %s: %s", routingExchange.name(), e.getMessage());
         }
-        return pattern.equals(value);
     }
 }
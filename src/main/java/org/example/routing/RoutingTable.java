@@ -0,0 +1,73 @@
+package org.example.routing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The routes compiled into one hash level per routing field. A field pattern is either an exact value, {@code *} for
+ * any present value, or absent, which only matches an absent value. A lookup visits at most the exact and the
+ * wildcard branch per field and returns the match that comes first in the route list, as a linear scan would.
+ */
+public final class RoutingTable {
+
+    private static final String WILDCARD = "*";
+
+    // messageType -> messageTypeVersion -> recipient, absent patterns are stored under the null key
+    private final Map<String, Map<String, Map<String, Match>>> index = new HashMap<>();
+    private final int size;
+
+    private RoutingTable(List<Route> routes) {
+        for (int ordinal = 0; ordinal < routes.size(); ordinal++) {
+            Route route = routes.get(ordinal);
+            // An earlier route with the same patterns shadows this one entirely
+            index.computeIfAbsent(route.getMessageType(), key -> new HashMap<>())
+                    .computeIfAbsent(route.getMessageTypeVersion(), key -> new HashMap<>())
+                    .putIfAbsent(route.getRecipient(), new Match(ordinal, route.getDestination()));
+        }
+        this.size = routes.size();
+    }
+
+    public static RoutingTable compile(List<Route> routes) {
+        return new RoutingTable(routes);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The destination of the first matching route, or null if no route matches
+     */
+    public String getDestination(RoutingCriteria routingCriteria) {
+        Match best = null;
+        String messageType = routingCriteria.messageType();
+        String messageTypeVersion = routingCriteria.messageTypeVersion();
+        String recipient = routingCriteria.recipient();
+        best = first(best, index.get(messageType), messageTypeVersion, recipient);
+        if (messageType != null) best = first(best, index.get(WILDCARD), messageTypeVersion, recipient);
+        return best != null ? best.destination() : null;
+    }
+
+    private static Match first(Match best, Map<String, Map<String, Match>> versions, String messageTypeVersion, String recipient) {
+        if (versions == null) return best;
+        best = first(best, versions.get(messageTypeVersion), recipient);
+        if (messageTypeVersion != null) best = first(best, versions.get(WILDCARD), recipient);
+        return best;
+    }
+
+    private static Match first(Match best, Map<String, Match> recipients, String recipient) {
+        if (recipients == null) return best;
+        best = first(best, recipients.get(recipient));
+        if (recipient != null) best = first(best, recipients.get(WILDCARD));
+        return best;
+    }
+
+    private static Match first(Match best, Match candidate) {
+        if (candidate == null) return best;
+        return best == null || candidate.ordinal() < best.ordinal() ? candidate : best;
+    }
+
+    private record Match(int ordinal, String destination) {
+    }
+}
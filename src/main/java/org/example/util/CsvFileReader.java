@@ -8,6 +8,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,11 +22,7 @@ public class CsvFileReader {
                 return Collections.emptyList();
             }
             try (Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8)) {
-                return new CsvToBeanBuilder<T>(reader)
-                        .withType(type)
-                        .withIgnoreLeadingWhiteSpace(true)
-                        .build()
-                        .parse();
+                return parse(reader, type);
             }
         } catch (IOException e) {
             Log.warnf("Failed to parse %s: %s", filename, e.getMessage());
@@ -32,4 +30,24 @@ public class CsvFileReader {
             return Collections.emptyList();
         }
     }
+
+    /**
+     * Reads a file from the file system. Unlike the classpath variant it throws on failure, so a broken file cannot
+     * replace a working configuration with an empty one.
+     */
+    public static <T> List<T> readFile(Path file, Class<T> type) throws IOException {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader, type);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to parse " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static <T> List<T> parse(Reader reader, Class<T> type) {
+        return new CsvToBeanBuilder<T>(reader)
+                .withType(type)
+                .withIgnoreLeadingWhiteSpace(true)
+                .build()
+                .parse();
+    }
 }
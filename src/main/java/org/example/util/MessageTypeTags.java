@@ -0,0 +1,35 @@
+package org.example.util;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the message type of a message into a meter tag. The message type is taken from the message as it came in, so
+ * only the first {@code comint.metrics.max-message-types} distinct ones get a tag of their own and any further one is
+ * counted as {@code other}, which keeps a sender from creating an unbounded number of series.
+ */
+@ApplicationScoped
+public class MessageTypeTags {
+
+    public static final String NONE = "none";
+    public static final String OTHER = "other";
+
+    private final int maxMessageTypes;
+    private final Set<String> messageTypes = ConcurrentHashMap.newKeySet();
+
+    public MessageTypeTags(@ConfigProperty(name = "comint.metrics.max-message-types", defaultValue = "32") int maxMessageTypes) {
+        this.maxMessageTypes = maxMessageTypes;
+    }
+
+    public String tag(String messageType) {
+        if (messageType == null || messageType.isBlank()) return NONE;
+        if (messageTypes.contains(messageType)) return messageType;
+        // Concurrent first sightings may overshoot the limit by a few, which is fine for a bound on series
+        if (messageTypes.size() >= maxMessageTypes) return OTHER;
+        messageTypes.add(messageType);
+        return messageType;
+    }
+}
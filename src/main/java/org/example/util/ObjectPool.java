@@ -0,0 +1,47 @@
+package org.example.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * An unbounded pool of reusable, non thread-safe objects that keeps at most {@code maxIdle} of them around.
+ * Unlike a ThreadLocal cache it also pays off with virtual threads, which are never reused and would each build their
+ * own instance. Objects are reset before they go back into the pool, objects whose reset fails are dropped.
+ */
+public class ObjectPool<T> {
+
+    private final Queue<T> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final int maxIdle;
+
+    public ObjectPool(Supplier<T> factory, Consumer<T> reset, int maxIdle) {
+        this.factory = factory;
+        this.reset = reset;
+        this.maxIdle = maxIdle;
+    }
+
+    public T borrow() {
+        T object = idle.poll();
+        if (object == null) return factory.get();
+        idleCount.decrementAndGet();
+        return object;
+    }
+
+    public void release(T object) {
+        try {
+            reset.accept(object);
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxIdle) {
+            idleCount.decrementAndGet();
+            return;
+        }
+        idle.offer(object);
+    }
+}
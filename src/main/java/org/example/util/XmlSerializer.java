@@ -0,0 +1,254 @@
+package org.example.util;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serializes a DOM subtree as UTF-8 without XML declaration straight into a buffer that is kept between uses, in place
+ * of an identity Transformer writing into a ByteArrayOutputStream. As with the Transformer, namespace declarations the
+ * subtree inherits from outside are added where a prefix is first used.
+ * Instances are not thread-safe and are pooled by {@link XmlUtilityService}.
+ */
+public class XmlSerializer {
+
+    private static final int INITIAL_CAPACITY = 8192;
+    // Buffers grown by a rare huge message are not kept in the pool
+    private static final int MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int count;
+    // Prefix and namespace pairs of the declarations in scope, innermost last
+    private final List<String> bindings = new ArrayList<>();
+    private int generatedPrefixes;
+
+    public void write(Node node) {
+        switch (node.getNodeType()) {
+            case Node.ELEMENT_NODE -> writeElement((Element) node);
+            case Node.TEXT_NODE -> writeEscaped(node.getNodeValue(), false);
+            case Node.CDATA_SECTION_NODE -> writeCData(node.getNodeValue());
+            case Node.COMMENT_NODE -> {
+                writeRaw("<!--");
+                writeRaw(node.getNodeValue());
+                writeRaw("-->");
+            }
+            case Node.PROCESSING_INSTRUCTION_NODE -> {
+                writeRaw("<?");
+                writeRaw(node.getNodeName());
+                String data = node.getNodeValue();
+                if (data != null && !data.isEmpty()) {
+                    writeRaw(" ");
+                    writeRaw(data);
+                }
+                writeRaw("?>");
+            }
+            case Node.DOCUMENT_NODE, Node.DOCUMENT_FRAGMENT_NODE, Node.ENTITY_REFERENCE_NODE -> writeChildren(node);
+            default -> {
+            }
+        }
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public void reset() {
+        count = 0;
+        bindings.clear();
+        generatedPrefixes = 0;
+        if (buffer.length > MAX_RETAINED_CAPACITY) buffer = new byte[INITIAL_CAPACITY];
+    }
+
+    private void writeElement(Element element) {
+        int scope = bindings.size();
+        String tagName = element.getTagName();
+        writeRaw("<");
+        writeRaw(tagName);
+
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) {
+                String prefix = XMLConstants.XMLNS_ATTRIBUTE.equals(attribute.getName()) ? "" : attribute.getLocalName();
+                bind(prefix, attribute.getValue());
+                writeAttribute(attribute.getName(), attribute.getValue());
+            }
+        }
+
+        String prefix = element.getPrefix() != null ? element.getPrefix() : "";
+        String namespace = element.getNamespaceURI() != null ? element.getNamespaceURI() : "";
+        if (element.getLocalName() != null && !namespace.equals(lookup(prefix))) declare(prefix, namespace);
+
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attribute = (Attr) attributes.item(i);
+            String attributeNamespace = attribute.getNamespaceURI();
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attributeNamespace)) continue;
+            if (attributeNamespace == null || attributeNamespace.isEmpty()) {
+                writeAttribute(attribute.getName(), attribute.getValue());
+            } else {
+                writeAttribute(attributePrefix(attribute) + ":" + attribute.getLocalName(), attribute.getValue());
+            }
+        }
+
+        if (element.hasChildNodes()) {
+            writeRaw(">");
+            writeChildren(element);
+            writeRaw("</");
+            writeRaw(tagName);
+            writeRaw(">");
+        } else {
+            writeRaw("/>");
+        }
+
+        while (bindings.size() > scope) {
+            bindings.removeLast();
+        }
+    }
+
+    private void writeChildren(Node node) {
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            write(child);
+        }
+    }
+
+    /**
+     * Namespaced attributes need a prefix of their own, as the default namespace does not apply to attributes.
+     */
+    private String attributePrefix(Attr attribute) {
+        String namespace = attribute.getNamespaceURI();
+        if (XMLConstants.XML_NS_URI.equals(namespace)) return XMLConstants.XML_NS_PREFIX;
+        String prefix = attribute.getPrefix();
+        if (prefix != null && namespace.equals(lookup(prefix))) return prefix;
+        for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+            String boundPrefix = bindings.get(i);
+            if (!boundPrefix.isEmpty() && bindings.get(i + 1).equals(namespace) && namespace.equals(lookup(boundPrefix))) {
+                return boundPrefix;
+            }
+        }
+        if (prefix == null || lookup(prefix) != null) {
+            do {
+                prefix = "ns" + generatedPrefixes++;
+            } while (lookup(prefix) != null);
+        }
+        declare(prefix, namespace);
+        return prefix;
+    }
+
+    private String lookup(String prefix) {
+        for (int i = bindings.size() - 2; i >= 0; i -= 2) {
+            if (bindings.get(i).equals(prefix)) return bindings.get(i + 1);
+        }
+        if (prefix.isEmpty()) return "";
+        return XMLConstants.XML_NS_PREFIX.equals(prefix) ? XMLConstants.XML_NS_URI : null;
+    }
+
+    private void bind(String prefix, String namespace) {
+        bindings.add(prefix);
+        bindings.add(namespace);
+    }
+
+    private void declare(String prefix, String namespace) {
+        bind(prefix, namespace);
+        writeAttribute(prefix.isEmpty() ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, namespace);
+    }
+
+    private void writeAttribute(String name, String value) {
+        writeRaw(" ");
+        writeRaw(name);
+        writeRaw("=\"");
+        writeEscaped(value, true);
+        writeRaw("\"");
+    }
+
+    private void writeCData(String value) {
+        writeRaw("<![CDATA[");
+        // The end marker cannot occur inside a section, so it is split over two
+        writeRaw(value.replace("]]>", "]]]]><![CDATA[>"));
+        writeRaw("]]>");
+    }
+
+    private void writeEscaped(String value, boolean attribute) {
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            String replacement = switch (value.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> attribute ? null : "&gt;";
+                case '"' -> attribute ? "&quot;" : null;
+                case '\r' -> "&#13;";
+                case '\n' -> attribute ? "&#10;" : null;
+                case '\t' -> attribute ? "&#9;" : null;
+                default -> null;
+            };
+            if (replacement != null) {
+                writeRaw(value, start, i);
+                writeRaw(replacement);
+                start = i + 1;
+            }
+        }
+        writeRaw(value, start, value.length());
+    }
+
+    private void writeRaw(String value) {
+        writeRaw(value, 0, value.length());
+    }
+
+    /**
+     * Encodes as UTF-8. A lone surrogate has no encoding and is written as '?', like the JDK encoders do.
+     */
+    private void writeRaw(String value, int start, int end) {
+        // At most three bytes per char, a surrogate pair takes four bytes for two chars
+        ensureCapacity(count + (end - start) * 3);
+        byte[] bytes = buffer;
+        int position = count;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    bytes[position++] = '?';
+                }
+            } else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        count = position;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+        }
+    }
+
+    /**
+     * Receives the serialized bytes, which are only valid until the serializer goes back into its pool.
+     */
+    @FunctionalInterface
+    public interface BufferHandler<T> {
+        T handle(byte[] buffer, int length) throws IOException;
+    }
+}
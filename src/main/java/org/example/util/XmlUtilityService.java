@@ -1,20 +1,28 @@
 package org.example.util;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXNotRecognizedException;
 import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.XMLReader;
 
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
 import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
@@ -26,16 +34,26 @@ import java.io.StringReader;
 public class XmlUtilityService {
 
     private final DocumentBuilderFactory documentBuilderFactory;
+    private final SAXParserFactory saxParserFactory;
     private final TransformerFactory transformerFactory;
-    private final SchemaFactory schemaFactory;
+    private final ObjectPool<DocumentBuilder> documentBuilderPool;
+    private final ObjectPool<Transformer> transformerPool;
+    private final ObjectPool<XmlSerializer> serializerPool;
 
-    public XmlUtilityService() {
+    public XmlUtilityService(@ConfigProperty(name = "comint.xml.pool.max-idle", defaultValue = "64") int maxIdle) {
         documentBuilderFactory = DocumentBuilderFactory.newInstance();
         configureSecureDocumentBuilderFactory();
+        saxParserFactory = SAXParserFactory.newInstance();
+        configureSecureSAXParserFactory();
         transformerFactory = TransformerFactory.newInstance();
         configureSecureTransformerFactory();
-        schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        configureSecureSchemaFactory();
+        documentBuilderPool = new ObjectPool<>(this::newDocumentBuilder, DocumentBuilder::reset, maxIdle);
+        // reset() also drops the output properties, so they are applied again
+        transformerPool = new ObjectPool<>(this::createTransformer, transformer -> {
+            transformer.reset();
+            configureTransformer(transformer);
+        }, maxIdle);
+        serializerPool = new ObjectPool<>(XmlSerializer::new, XmlSerializer::reset, maxIdle);
     }
 
     private void configureSecureDocumentBuilderFactory() {
@@ -51,6 +69,18 @@ public class XmlUtilityService {
         }
     }
 
+    private void configureSecureSAXParserFactory() {
+        try {
+            saxParserFactory.setNamespaceAware(true);
+            saxParserFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            saxParserFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            saxParserFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            saxParserFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void configureSecureTransformerFactory() {
         try {
             transformerFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -61,7 +91,7 @@ public class XmlUtilityService {
         }
     }
 
-    private void configureSecureSchemaFactory() {
+    private void configureSecureSchemaFactory(SchemaFactory schemaFactory) {
         try {
             schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_DTD, "");
             schemaFactory.setProperty(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
@@ -74,25 +104,105 @@ public class XmlUtilityService {
         return documentBuilderFactory.newDocumentBuilder();
     }
 
-    public Document createDocument() throws ParserConfigurationException {
-        return createDocumentBuilder().newDocument();
+    private DocumentBuilder newDocumentBuilder() {
+        try {
+            return createDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * A namespace aware reader for streaming sources, configured as securely as the DOM parser.
+     */
+    public XMLReader createXMLReader() throws SAXException {
+        try {
+            return saxParserFactory.newSAXParser().getXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Document createDocument() {
+        DocumentBuilder documentBuilder = documentBuilderPool.borrow();
+        try {
+            return documentBuilder.newDocument();
+        } finally {
+            documentBuilderPool.release(documentBuilder);
+        }
+    }
+
+    /**
+     * Parses with a pooled {@link DocumentBuilder}, which is reset before it is handed out again.
+     */
+    public Document parse(InputStream inputStream) throws IOException, SAXException {
+        DocumentBuilder documentBuilder = documentBuilderPool.borrow();
+        try {
+            return documentBuilder.parse(inputStream);
+        } finally {
+            documentBuilderPool.release(documentBuilder);
+        }
     }
 
     public Transformer createTransformer() {
         try {
             Transformer transformer = transformerFactory.newTransformer();
-            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            configureTransformer(transformer);
             return transformer;
         } catch (TransformerConfigurationException e) {
             throw new RuntimeException(e);
         }
     }
 
+    private static void configureTransformer(Transformer transformer) {
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+    }
+
+    /**
+     * Serializes the node with a pooled identity {@link Transformer}, which is reset before it is handed out again.
+     */
+    public void transform(Node node, Result result) throws TransformerException {
+        transform(new DOMSource(node), result);
+    }
+
+    public void transform(Source source, Result result) throws TransformerException {
+        Transformer transformer = transformerPool.borrow();
+        try {
+            transformer.transform(source, result);
+        } finally {
+            transformerPool.release(transformer);
+        }
+    }
+
+    /**
+     * Serializes the node as UTF-8 into a pooled buffer and hands it to the handler, which must not keep it.
+     */
+    public <T> T serialize(Node node, XmlSerializer.BufferHandler<T> handler) throws IOException {
+        XmlSerializer serializer = serializerPool.borrow();
+        try {
+            serializer.write(node);
+            return handler.handle(serializer.buffer(), serializer.size());
+        } finally {
+            serializerPool.release(serializer);
+        }
+    }
+
+    /**
+     * Compiles with a factory of its own, as a {@link SchemaFactory} is not thread-safe and schemas are compiled in
+     * parallel. The factory is cheap compared to the compilation.
+     */
     public Schema createSchema(InputStream schemaFile) throws SAXException {
+        SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+        configureSecureSchemaFactory(schemaFactory);
         return schemaFactory.newSchema(new StreamSource(schemaFile));
     }
 
-    public Document parseXmlString(String xmlString) throws ParserConfigurationException, IOException, SAXException {
-        return createDocumentBuilder().parse(new InputSource(new StringReader(xmlString)));
+    public Document parseXmlString(String xmlString) throws IOException, SAXException {
+        DocumentBuilder documentBuilder = documentBuilderPool.borrow();
+        try {
+            return documentBuilder.parse(new InputSource(new StringReader(xmlString)));
+        } finally {
+            documentBuilderPool.release(documentBuilder);
+        }
     }
 }
@@ -0,0 +1,59 @@
+package org.example.validation;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Passes on only the content of the message wrapper, the root element of a stored message, so the schema sees the
+ * TAF/TAP TSI message alone, as with the DOM validation. The wrapper has to contain exactly one element.
+ */
+class MessageContentFilter extends XMLFilterImpl {
+
+    private int depth;
+    private int elementChildren;
+
+    MessageContentFilter(XMLReader parent) {
+        super(parent);
+    }
+
+    @Override
+    public void startDocument() throws SAXException {
+        depth = 0;
+        elementChildren = 0;
+        super.startDocument();
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        depth++;
+        if (depth == 1) return;
+        if (depth == 2 && ++elementChildren > 1) throw new SAXException("Size not 1");
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (depth-- == 1) {
+            if (elementChildren != 1) throw new SAXException("Size not 1");
+            return;
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (depth > 1) super.characters(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (depth > 1) super.ignorableWhitespace(ch, start, length);
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) throws SAXException {
+        if (depth > 1) super.processingInstruction(target, data);
+    }
+}
@@ -1,34 +1,56 @@
 package org.example.validation;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.example.MessageExtractor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.example.MessageHeader;
 import org.example.XmlSchemaService;
+import org.example.util.MessageTypeTags;
+import org.example.util.ObjectPool;
+import org.example.util.XmlUtilityService;
 import org.example.util.XmlUtils;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import javax.xml.transform.Source;
 import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ApplicationScoped
 public class MessageValidator {
 
-    private final MessageExtractor messageExtractor;
     private final XmlSchemaService xmlSchemaService;
+    private final XmlUtilityService xmlUtilityService;
+    private final MeterRegistry meterRegistry;
+    private final MessageTypeTags messageTypeTags;
+    private final int maxIdle;
+    private final Map<Schema, ObjectPool<Validator>> validatorPools = new ConcurrentHashMap<>();
 
     public MessageValidator(
-            MessageExtractor messageExtractor,
-            XmlSchemaService xmlSchemaService
+            XmlSchemaService xmlSchemaService,
+            XmlUtilityService xmlUtilityService,
+            MeterRegistry meterRegistry,
+            MessageTypeTags messageTypeTags,
+            @ConfigProperty(name = "comint.xml.pool.max-idle", defaultValue = "64") int maxIdle
     ) {
-        this.messageExtractor = messageExtractor;
         this.xmlSchemaService = xmlSchemaService;
+        this.xmlUtilityService = xmlUtilityService;
+        this.meterRegistry = meterRegistry;
+        this.messageTypeTags = messageTypeTags;
+        this.maxIdle = maxIdle;
     }
 
-    public void validateMessage(Element message) throws MessageValidationException {
+    public void validateMessage(Element message, MessageHeader messageHeader) throws MessageValidationException {
         Log.debug("Validating message");
 
         List<Element> elementChildNodes = XmlUtils.getElementChildNodes(message);
@@ -37,20 +59,54 @@ public class MessageValidator {
         }
 
         Element tafTapTsiMessage = elementChildNodes.getFirst();
-        String messageTypeVersion = messageExtractor.extractMessageTypeVersion(tafTapTsiMessage);
+        validate(getSchema(messageHeader), new DOMSource(tafTapTsiMessage), messageHeader);
+    }
+
+    /**
+     * Validates a serialized message, as it is stored in a host queue, while it is parsed, without building a DOM.
+     */
+    public void validateMessage(InputStream message, MessageHeader messageHeader) throws MessageValidationException {
+        Log.debug("Validating message stream");
+
+        Schema schema = getSchema(messageHeader);
+        try {
+            MessageContentFilter messageContentFilter = new MessageContentFilter(xmlUtilityService.createXMLReader());
+            validate(schema, new SAXSource(messageContentFilter, new InputSource(message)), messageHeader);
+        } catch (SAXException e) {
+            throw new MessageValidationException(e.getMessage());
+        }
+    }
+
+    private Schema getSchema(MessageHeader messageHeader) throws MessageValidationException {
+        String messageTypeVersion = messageHeader.messageTypeVersion();
         if (messageTypeVersion == null) {
             throw new MessageValidationException("No MessageTypeVersion");
         }
 
-        Optional<Schema> schema = xmlSchemaService.getSchema(messageTypeVersion);
-        if (schema.isEmpty()) {
-            throw new MessageValidationException("No schema");
-        }
+        return xmlSchemaService.getSchema(messageTypeVersion)
+                .orElseThrow(() -> new MessageValidationException("No schema"));
+    }
 
+    /**
+     * Validators are not thread-safe but costly to create, so each schema version keeps a pool of them.
+     */
+    private void validate(Schema schema, Source source, MessageHeader messageHeader) throws MessageValidationException {
+        ObjectPool<Validator> validatorPool = validatorPools.computeIfAbsent(schema, s -> new ObjectPool<>(s::newValidator, Validator::reset, maxIdle));
+        Validator validator = validatorPool.borrow();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "invalid";
         try {
-            schema.get().newValidator().validate(new DOMSource(tafTapTsiMessage));
+            validator.validate(source);
+            outcome = "valid";
         } catch (IOException | SAXException e) {
             throw new MessageValidationException(e.getMessage());
+        } finally {
+            validatorPool.release(validator);
+            sample.stop(meterRegistry.timer("comint.validation",
+                    "messageType", messageTypeTags.tag(messageHeader.messageType()),
+                    "messageTypeVersion", messageHeader.messageTypeVersion(),
+                    "outcome", outcome
+            ));
         }
     }
 }
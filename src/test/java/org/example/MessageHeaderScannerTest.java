@@ -0,0 +1,56 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MessageHeaderScannerTest {
+
+    private static final MessageHeader EXPECTED = new MessageHeader("2007", "3.5.0.0", "scanner-test", "2000-01-01T00:00:00.00", "0000", "0000");
+
+    @Test
+    void domScan() {
+        assertEquals(EXPECTED, MessageHeaderScanner.scan(createMessage()));
+    }
+
+    @Test
+    void streamScan() throws Exception {
+        assertEquals(EXPECTED, MessageHeaderScanner.scan(new ByteArrayInputStream(toBytes(createMessage()))));
+    }
+
+    @Test
+    void streamScanStopsAfterHeader() throws XMLStreamException {
+        String xml = "<Message><MessageHeader><MessageReference><MessageIdentifier> id </MessageIdentifier></MessageReference>"
+                + "<Sender>1</Sender></MessageHeader><Body>not well-formed";
+
+        MessageHeader messageHeader = MessageHeaderScanner.scan(new ByteArrayInputStream(xml.getBytes()));
+
+        assertEquals("id", messageHeader.messageIdentifier());
+        assertEquals("1", messageHeader.sender());
+    }
+
+    @Test
+    void missingHeaderIsEmpty() throws XMLStreamException {
+        assertEquals(MessageHeader.EMPTY, MessageHeaderScanner.scan(new ByteArrayInputStream("<Message/>".getBytes())));
+    }
+
+    private static Element createMessage() {
+        return new MessageBuilder("ReceiptConfirmationMessage", "3.5.0.0")
+                .messageIdentifier("scanner-test")
+                .build();
+    }
+
+    private static byte[] toBytes(Element message) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(message), new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+}
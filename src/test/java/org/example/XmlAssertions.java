@@ -0,0 +1,53 @@
+package org.example;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public final class XmlAssertions {
+
+    private XmlAssertions() {
+    }
+
+    /**
+     * Compares names by namespace, as prefixes and namespace declarations may legitimately differ.
+     */
+    public static void assertSameContent(Node expected, Node actual, String message) {
+        assertEquals(expected.getNodeType(), actual.getNodeType(), message);
+        assertEquals(expected.getNamespaceURI(), actual.getNamespaceURI(), message);
+        assertEquals(expected.getLocalName(), actual.getLocalName(), message);
+        if (expected.getNodeType() != Node.ELEMENT_NODE) {
+            assertEquals(expected.getNodeValue(), actual.getNodeValue(), message);
+            return;
+        }
+
+        NamedNodeMap expectedAttributes = expected.getAttributes();
+        int attributes = 0;
+        for (int i = 0; i < expectedAttributes.getLength(); i++) {
+            Attr attribute = (Attr) expectedAttributes.item(i);
+            if (XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(attribute.getNamespaceURI())) continue;
+            attributes++;
+            assertEquals(attribute.getValue(), ((Element) actual).getAttributeNS(attribute.getNamespaceURI(), attribute.getLocalName()), message);
+        }
+        NamedNodeMap actualAttributes = actual.getAttributes();
+        for (int i = 0; i < actualAttributes.getLength(); i++) {
+            if (!XMLConstants.XMLNS_ATTRIBUTE_NS_URI.equals(actualAttributes.item(i).getNamespaceURI())) attributes--;
+        }
+        assertEquals(0, attributes, message);
+
+        Node actualChild = actual.getFirstChild();
+        for (Node child = expected.getFirstChild(); child != null; child = child.getNextSibling()) {
+            assertNotNull(actualChild, message);
+            assertSameContent(child, actualChild, message);
+            actualChild = actualChild.getNextSibling();
+        }
+        assertNull(actualChild, message);
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.benchmark;
+
+import org.example.routing.LinearRouteMatcher;
+import org.example.routing.Route;
+import org.example.routing.RoutingCriteria;
+import org.example.routing.RoutingTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the linear route scan with the compiled {@link RoutingTable} for growing route lists, laid out as one route
+ * per partner, message type and version with catch-all routes at the end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    private static final String[] MESSAGE_TYPES = {"2007", "2021", "2022", "4001", "4002", "4005", "4010", "5001"};
+    private static final String[] VERSIONS = {"3.1.0.0", "3.5.0.0"};
+
+    @Param({"10", "100", "1000", "5000"})
+    private int routeCount;
+
+    private LinearRouteMatcher linearRouteMatcher;
+    private RoutingTable routingTable;
+    private RoutingCriteria[] criteria;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<Route> routes = new ArrayList<>();
+        for (int partner = 0; routes.size() < routeCount - 2; partner++) {
+            for (String messageType : MESSAGE_TYPES) {
+                for (String version : VERSIONS) {
+                    routes.add(createRoute(messageType, version, String.format("%04d", partner), "host-" + partner));
+                }
+            }
+        }
+        routes = new ArrayList<>(routes.subList(0, routeCount - 2));
+        routes.add(createRoute("*", "*", "9999", "unknown-partner"));
+        routes.add(createRoute("*", "*", "*", "default"));
+        linearRouteMatcher = new LinearRouteMatcher(routes);
+        routingTable = RoutingTable.compile(routes);
+
+        // Lookups spread over all routes, including some that fall through to the catch-all
+        Random random = new Random(42);
+        criteria = new RoutingCriteria[1024];
+        for (int i = 0; i < criteria.length; i++) {
+            Route route = routes.get(random.nextInt(routes.size()));
+            String recipient = random.nextInt(10) == 0 ? "8888" : route.getRecipient();
+            criteria[i] = new RoutingCriteria(MESSAGE_TYPES[random.nextInt(MESSAGE_TYPES.length)], VERSIONS[random.nextInt(VERSIONS.length)], recipient);
+        }
+    }
+
+    @Benchmark
+    public String linear() {
+        return linearRouteMatcher.getDestination(nextCriteria());
+    }
+
+    @Benchmark
+    public String indexed() {
+        return routingTable.getDestination(nextCriteria());
+    }
+
+    private RoutingCriteria nextCriteria() {
+        next = (next + 1) & (criteria.length - 1);
+        return criteria[next];
+    }
+
+    private static Route createRoute(String messageType, String messageTypeVersion, String recipient, String destination) {
+        Route route = new Route();
+        route.setMessageType(messageType);
+        route.setMessageTypeVersion(messageTypeVersion);
+        route.setRecipient(recipient);
+        route.setDestination(destination);
+        return route;
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.benchmark;
+
+import org.example.messaging.UICMessagePayload;
+import org.example.util.XmlUtilityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares relaying a stored UIC message through a DOM, as {@code UICMessageSender.sendMessage} does, with streaming
+ * it through {@link UICMessagePayload}. Both write to a discarding stream, so only the XML work is measured.
+ * Run with {@code -prof gc} to see the allocation per relayed message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UICMessagePayloadBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    private int messageSize;
+
+    private XmlUtilityService xmlUtilityService;
+    private byte[] message;
+
+    @Setup
+    public void setup() {
+        xmlUtilityService = new XmlUtilityService(64);
+        message = createMessage(messageSize);
+    }
+
+    @Benchmark
+    public void relayThroughDom() throws Exception {
+        Document document = xmlUtilityService.parse(new ByteArrayInputStream(message));
+        xmlUtilityService.transform(document.getDocumentElement(), new StreamResult(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public void relayStreaming() throws Exception {
+        xmlUtilityService.transform(UICMessagePayload.of(new ByteArrayInputStream(message)), new StreamResult(OutputStream.nullOutputStream()));
+    }
+
+    private static byte[] createMessage(int size) {
+        StringBuilder builder = new StringBuilder(size + 512)
+                .append("<message><TrainCompositionMessage xmlns=\"http://www.era.europa.eu/schemes/TAFTSI/3.5\">")
+                .append("<MessageHeader><MessageReference><MessageType>2021</MessageType><MessageTypeVersion>3.5.0.0</MessageTypeVersion>")
+                .append("<MessageIdentifier>benchmark</MessageIdentifier><MessageDateTime>2024-01-01T00:00:00</MessageDateTime></MessageReference>")
+                .append("<Sender CI_InstanceNumber=\"01\">0000</Sender><Recipient CI_InstanceNumber=\"01\">0000</Recipient></MessageHeader>");
+        int wagon = 0;
+        while (builder.length() < size) {
+            builder.append("<WagonData><WagonNumberFreight>").append(31800000000L + wagon++)
+                    .append("</WagonNumberFreight><WagonTrainPosition>").append(wagon)
+                    .append("</WagonTrainPosition><BrakeWeight>42</BrakeWeight></WagonData>");
+        }
+        return builder.append("</TrainCompositionMessage></message>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
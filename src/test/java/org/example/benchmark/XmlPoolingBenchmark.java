@@ -0,0 +1,78 @@
+package org.example.benchmark;
+
+import org.example.MessageBuilder;
+import org.example.util.XmlUtilityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares building a new DocumentBuilder / Transformer per message, as done before, with the pooled instances of
+ * {@link XmlUtilityService}. Run with {@code -prof gc} to see the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class XmlPoolingBenchmark {
+
+    private XmlUtilityService xmlUtilityService;
+    private Element message;
+    private byte[] messageBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        xmlUtilityService = new XmlUtilityService(64);
+        message = new MessageBuilder("ReceiptConfirmationMessage", "3.5.0.0")
+                .messageIdentifier("benchmark")
+                .build();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xmlUtilityService.transform(message, new StreamResult(outputStream));
+        messageBytes = outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public Document parseWithNewDocumentBuilder() throws Exception {
+        return xmlUtilityService.createDocumentBuilder().parse(new ByteArrayInputStream(messageBytes));
+    }
+
+    @Benchmark
+    public Document parseWithPooledDocumentBuilder() throws Exception {
+        return xmlUtilityService.parse(new ByteArrayInputStream(messageBytes));
+    }
+
+    @Benchmark
+    public byte[] serializeWithNewTransformer() throws Exception {
+        Transformer transformer = xmlUtilityService.createTransformer();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(message), new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializeWithPooledTransformer() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xmlUtilityService.transform(message, new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.benchmark;
+
+import org.example.MessageBuilder;
+import org.example.util.XmlUtilityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serializing a message for publishing through the pooled identity Transformer into a ByteArrayOutputStream,
+ * as done before, with the pooled {@code XmlSerializer}. Both end with the exact-length array the AMQP client needs.
+ * The wagon counts give messages from a short receipt confirmation of about 1 KB up to a long train composition of
+ * several hundred KB. Run with {@code -prof gc} to see the allocation per message.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class XmlSerializerBenchmark {
+
+    @Param({"0", "20", "100", "1000"})
+    private int wagons;
+
+    private XmlUtilityService xmlUtilityService;
+    private Element message;
+
+    @Setup
+    public void setup() {
+        xmlUtilityService = new XmlUtilityService(64);
+        MessageBuilder messageBuilder = new MessageBuilder("TrainCompositionMessage", "3.5.0.0")
+                .messageIdentifier("benchmark")
+                .element("TrainCompositionJourneySection");
+        for (int wagon = 1; wagon <= wagons; wagon++) {
+            messageBuilder.element("WagonData")
+                    .text("WagonNumberFreight", Long.toString(318_000_000_00L + wagon))
+                    .text("WagonTrainPosition", Integer.toString(wagon))
+                    .text("BrakeWeight", "42")
+                    .text("Remark", "Loaded & sealed <checked>")
+                    .up();
+        }
+        message = messageBuilder.build();
+    }
+
+    @Benchmark
+    public byte[] transformer() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        xmlUtilityService.transform(message, new StreamResult(outputStream));
+        return outputStream.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] serializer() throws Exception {
+        return xmlUtilityService.serialize(message, (buffer, length) -> Arrays.copyOf(buffer, length));
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.deduplication;
+
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExpiringFingerprintSetTest {
+
+    private static final long WINDOW = 1_000;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void fingerprintsExpireAfterOneToTwoWindows() {
+        ExpiringFingerprintSet fingerprints = new ExpiringFingerprintSet(WINDOW, 100, clock::get);
+        fingerprints.add(1);
+        fingerprints.add(0);
+
+        clock.set(WINDOW + 1);
+        assertTrue(fingerprints.contains(1));
+        assertTrue(fingerprints.contains(0));
+
+        clock.set(2 * WINDOW + 1);
+        assertFalse(fingerprints.contains(1));
+        assertFalse(fingerprints.contains(0));
+    }
+
+    @Test
+    void idleSetForgetsEverything() {
+        ExpiringFingerprintSet fingerprints = new ExpiringFingerprintSet(WINDOW, 100, clock::get);
+        fingerprints.add(1);
+
+        clock.set(3 * WINDOW);
+        assertFalse(fingerprints.contains(1));
+        assertEquals(0, fingerprints.size());
+    }
+
+    @Test
+    void memoryStaysBounded() {
+        ExpiringFingerprintSet fingerprints = new ExpiringFingerprintSet(WINDOW, 10, clock::get);
+        for (long fingerprint = 1; fingerprint <= 1_000; fingerprint++) {
+            fingerprints.add(fingerprint * 0x9E3779B97F4A7C15L);
+        }
+
+        assertTrue(fingerprints.size() <= 20);
+        assertTrue(fingerprints.contains(1_000 * 0x9E3779B97F4A7C15L));
+        assertFalse(fingerprints.contains(0x9E3779B97F4A7C15L));
+    }
+
+    @Test
+    void fingerprintCoversIdentifierAndPayload() throws Exception {
+        Element payload = createPayload("a", "b");
+
+        assertEquals(MessageFingerprint.of("id", payload), MessageFingerprint.of("id", createPayload("a", "b")));
+        assertNotEquals(MessageFingerprint.of("id", payload), MessageFingerprint.of("other", payload));
+        assertNotEquals(MessageFingerprint.of("id", payload), MessageFingerprint.of("id", createPayload("a", "c")));
+        assertNotEquals(MessageFingerprint.of("id", payload), MessageFingerprint.of("id", createPayload("ab", "")));
+    }
+
+    private static Element createPayload(String first, String second) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element message = document.createElementNS("urn:test", "Message");
+        Element firstElement = document.createElementNS("urn:test", "First");
+        firstElement.setTextContent(first);
+        Element secondElement = document.createElementNS("urn:test", "Second");
+        secondElement.setTextContent(second);
+        message.appendChild(firstElement);
+        message.appendChild(secondElement);
+        document.appendChild(message);
+        return message;
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.messaging;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.ws.WebServiceException;
+import org.example.util.XmlUtilityService;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.dom.DOMResult;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+
+import static org.example.XmlAssertions.assertSameContent;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UICMessagePayloadTest {
+
+    private static final String STORED_MESSAGE = """
+            <message xmlns:a="urn:attributes" a:id="1"><TrainCompositionMessage xmlns="http://www.era.europa.eu/schemes/TAFTSI/3.5">\
+            <MessageHeader><MessageType>2021</MessageType><Remark>a &lt; b &amp; "c"</Remark></MessageHeader>\
+            <Empty/><other:Section xmlns:other="urn:other" a:code="x"><![CDATA[<raw>]]></other:Section>\
+            </TrainCompositionMessage></message>""";
+
+    private final XmlUtilityService xmlUtilityService = new XmlUtilityService(4);
+
+    @Test
+    void payloadMatchesMarshalledUICMessage() throws Exception {
+        UICMessage uicMessage = new ObjectFactory().createUICMessage();
+        uicMessage.setMessage(parse(STORED_MESSAGE).getDocumentElement());
+        DOMResult marshalled = new DOMResult();
+        JAXBContext.newInstance(UICMessage.class).createMarshaller().marshal(
+                new JAXBElement<>(new QName(UICMessagePayload.NAMESPACE, "UICMessage"), UICMessage.class, uicMessage), marshalled);
+
+        DOMResult streamed = new DOMResult();
+        xmlUtilityService.transform(UICMessagePayload.of(new ByteArrayInputStream(STORED_MESSAGE.getBytes(StandardCharsets.UTF_8))), streamed);
+
+        assertSameContent(normalize(marshalled), normalize(streamed), STORED_MESSAGE);
+    }
+
+    @Test
+    void malformedMessageIsPayloadFailure() {
+        byte[] truncated = STORED_MESSAGE.substring(0, STORED_MESSAGE.length() / 2).getBytes(StandardCharsets.UTF_8);
+
+        TransformerException e = assertThrows(TransformerException.class,
+                () -> xmlUtilityService.transform(UICMessagePayload.of(new ByteArrayInputStream(truncated)), new DOMResult()));
+        assertTrue(UICMessagePayload.isPayloadFailure(e));
+    }
+
+    @Test
+    void transportFailureIsNoPayloadFailure() {
+        assertFalse(UICMessagePayload.isPayloadFailure(new WebServiceException(new ConnectException("Connection refused"))));
+    }
+
+    /**
+     * Whether character data is written as CDATA section or escaped text makes no difference to the receiver.
+     */
+    private static Element normalize(DOMResult result) {
+        Document document = (Document) result.getNode();
+        document.getDomConfig().setParameter("cdata-sections", false);
+        document.normalizeDocument();
+        return document.getDocumentElement();
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        return documentBuilderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+}
@@ -0,0 +1,56 @@
+package org.example.messaging.ack;
+
+import org.example.MessageHeader;
+import org.example.util.XmlUtilityService;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LITechnicalAckBuilderTest {
+
+    private static final MessageHeader MESSAGE_HEADER = new MessageHeader("2007", "3.5.0.0", "ack-test", "2000-01-01T00:00:00.00", "0000", "0001");
+
+    private final LITechnicalAckBuilder marshallingBuilder = createBuilder(false);
+    private final LITechnicalAckBuilder templateBuilder = createBuilder(true);
+
+    @Test
+    void templateWriterMatchesMarshaller() {
+        assertTrue(marshallingBuilder.createAck("id", MESSAGE_HEADER).isEqualNode(templateBuilder.createAck("id", MESSAGE_HEADER)));
+        assertTrue(marshallingBuilder.createNack("id", MESSAGE_HEADER).isEqualNode(templateBuilder.createNack("id", MESSAGE_HEADER)));
+    }
+
+    @Test
+    void templateWriterOutputUnmarshals() throws Exception {
+        LITechnicalAck liTechnicalAck = templateBuilder.unmarshal(templateBuilder.createNack("id", MESSAGE_HEADER));
+
+        assertEquals("NACK", liTechnicalAck.getResponseStatus());
+        assertEquals("ACKIDid", liTechnicalAck.getAckIndentifier());
+        assertEquals("ack-test", liTechnicalAck.getMessageReference().getMessageIdentifier());
+        assertEquals("2000-01-01T00:00:00.00", liTechnicalAck.getMessageReference().getMessageDateTime().toXMLFormat());
+        assertEquals("0001", liTechnicalAck.getRecipient());
+        assertEquals(19, liTechnicalAck.getRemoteLIInstanceNumber());
+    }
+
+    @Test
+    void absentValuesAreLeftOut() {
+        MessageHeader messageHeader = new MessageHeader("2007", "3.5.0.0", "ack-test", null, "0000", null);
+
+        Element marshalled = marshallingBuilder.createAck("id", messageHeader);
+        Element written = templateBuilder.createAck("id", messageHeader);
+
+        assertTrue(marshalled.isEqualNode(written));
+        assertNull(findElement(written, "MessageDateTime"));
+        assertNull(findElement(written, "Recipient"));
+    }
+
+    private static Element findElement(Element element, String name) {
+        return (Element) element.getElementsByTagNameNS("*", name).item(0);
+    }
+
+    private static LITechnicalAckBuilder createBuilder(boolean templateWriter) {
+        return new LITechnicalAckBuilder(new XmlUtilityService(4), "LIName", 19, templateWriter, 4);
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class AckCoalescerTest {
+
+    private final List<String> frames = new ArrayList<>();
+
+    @Test
+    void inOrderAcksAreCoalescedAtBatchSize() throws IOException {
+        AckCoalescer coalescer = createCoalescer(3);
+        track(coalescer, 1, 2, 3, 4);
+
+        coalescer.ack(1);
+        coalescer.ack(2);
+        assertEquals(List.of(), frames);
+
+        coalescer.ack(3);
+        assertEquals(List.of("ack 3 multiple"), frames);
+    }
+
+    @Test
+    void outOfOrderAcksWaitForLowerInFlightDelivery() throws IOException {
+        AckCoalescer coalescer = createCoalescer(3);
+        track(coalescer, 1, 2, 3, 4);
+
+        coalescer.ack(4);
+        coalescer.ack(3);
+        coalescer.ack(2);
+        coalescer.flush();
+        assertEquals(List.of(), frames);
+
+        coalescer.ack(1);
+        assertEquals(List.of("ack 4 multiple"), frames);
+    }
+
+    @Test
+    void flushStopsBelowInFlightDelivery() throws IOException {
+        AckCoalescer coalescer = createCoalescer(10);
+        track(coalescer, 1, 2, 3, 4);
+
+        coalescer.ack(1);
+        coalescer.ack(2);
+        coalescer.ack(4);
+        coalescer.flush();
+        assertEquals(List.of("ack 2 multiple"), frames);
+
+        coalescer.ack(3);
+        coalescer.flush();
+        assertEquals(List.of("ack 2 multiple", "ack 4 multiple"), frames);
+    }
+
+    @Test
+    void singlePendingAckIsNotSentAsMultiple() throws IOException {
+        AckCoalescer coalescer = createCoalescer(10);
+        track(coalescer, 1, 2);
+
+        coalescer.ack(2);
+        coalescer.ack(1);
+        coalescer.flush();
+        assertEquals(List.of("ack 2 multiple"), frames);
+
+        track(coalescer, 3);
+        coalescer.ack(3);
+        coalescer.flush();
+        assertEquals(List.of("ack 2 multiple", "ack 3 single"), frames);
+    }
+
+    @Test
+    void rejectIsSentBeforeAnyAckPastIt() throws IOException {
+        AckCoalescer coalescer = createCoalescer(10);
+        track(coalescer, 1, 2, 3, 4);
+
+        coalescer.ack(1);
+        coalescer.ack(3);
+        coalescer.ack(4);
+        coalescer.settle(2, () -> frames.add("reject 2"));
+        coalescer.flush();
+
+        assertEquals(List.of("ack 1 single", "reject 2", "ack 4 multiple"), frames);
+    }
+
+    @Test
+    void rejectOfLaterDeliveryDoesNotReleaseInFlightOne() throws IOException {
+        AckCoalescer coalescer = createCoalescer(10);
+        track(coalescer, 1, 2, 3);
+
+        coalescer.ack(3);
+        coalescer.settle(2, () -> frames.add("reject 2"));
+        coalescer.flush();
+        assertEquals(List.of("reject 2"), frames);
+
+        coalescer.ack(1);
+        coalescer.flush();
+        assertEquals(List.of("reject 2", "ack 3 multiple"), frames);
+    }
+
+    @Test
+    void flushIfDueRespectsDelay() throws IOException {
+        AckCoalescer delayed = new AckCoalescer(this::record, 10, TimeUnit.HOURS.toNanos(1));
+        track(delayed, 1);
+        delayed.ack(1);
+        delayed.flushIfDue();
+        assertEquals(List.of(), frames);
+
+        AckCoalescer immediate = new AckCoalescer(this::record, 10, 0);
+        track(immediate, 1);
+        immediate.ack(1);
+        immediate.flushIfDue();
+        assertEquals(List.of("ack 1 single"), frames);
+    }
+
+    @Test
+    void untrackedAckIsPassedThrough() throws IOException {
+        AckCoalescer coalescer = createCoalescer(10);
+        track(coalescer, 1, 2);
+        coalescer.reset();
+
+        coalescer.ack(2);
+        assertEquals(List.of("ack 2 single"), frames);
+    }
+
+    private AckCoalescer createCoalescer(int maxBatchSize) {
+        return new AckCoalescer(this::record, maxBatchSize, TimeUnit.HOURS.toNanos(1));
+    }
+
+    private void record(long deliveryTag, boolean multiple) {
+        frames.add("ack " + deliveryTag + (multiple ? " multiple" : " single"));
+    }
+
+    private static void track(AckCoalescer coalescer, long... deliveryTags) {
+        for (long deliveryTag : deliveryTags) {
+            coalescer.track(deliveryTag);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PayloadEncodingTest {
+
+    private static final byte[] PAYLOAD = "<Message><Header/><Body>payload</Body></Message>".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void gzipRoundTrip() throws IOException {
+        assertRoundTrip(new PayloadEncoding(PayloadEncoding.Codec.GZIP, 0), PayloadEncoding.GZIP);
+    }
+
+    @Test
+    void deflateRoundTrip() throws IOException {
+        assertRoundTrip(new PayloadEncoding(PayloadEncoding.Codec.DEFLATE, 0), PayloadEncoding.DEFLATE);
+    }
+
+    @Test
+    void payloadBelowThresholdIsNotCompressed() throws IOException {
+        PayloadEncoding.Encoded encoded = new PayloadEncoding(PayloadEncoding.Codec.GZIP, PAYLOAD.length + 1).encode(PAYLOAD);
+
+        assertNull(encoded.contentEncoding());
+        assertSame(PAYLOAD, encoded.payload());
+    }
+
+    @Test
+    void unknownContentEncodingIsRejected() {
+        PayloadEncoding payloadEncoding = new PayloadEncoding(PayloadEncoding.Codec.NONE, 0);
+        assertThrows(IOException.class, () -> payloadEncoding.decode("br", PAYLOAD));
+    }
+
+    private static void assertRoundTrip(PayloadEncoding payloadEncoding, String contentEncoding) throws IOException {
+        PayloadEncoding.Encoded encoded = payloadEncoding.encode(PAYLOAD);
+        assertEquals(contentEncoding, encoded.contentEncoding());
+        assertTrue(encoded.payload().length < PAYLOAD.length);
+
+        try (InputStream inputStream = payloadEncoding.decode(encoded.contentEncoding(), encoded.payload())) {
+            assertArrayEquals(PAYLOAD, inputStream.readAllBytes());
+        }
+    }
+}
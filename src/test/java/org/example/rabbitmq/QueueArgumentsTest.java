@@ -0,0 +1,155 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.MessageProperties;
+import org.example.host.Host;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers
+public class QueueArgumentsTest {
+
+    @Container
+    private static final RabbitMQContainer RABBIT_MQ_CONTAINER = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void connect() throws Exception {
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setHost(RABBIT_MQ_CONTAINER.getHost());
+        connectionFactory.setPort(RABBIT_MQ_CONTAINER.getAmqpPort());
+        connection = connectionFactory.newConnection();
+    }
+
+    @AfterAll
+    static void disconnect() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void classicQueueDropsHeadWhenFull() throws Exception {
+        Host host = createHost("classic-host", null);
+        host.setMaxLength(1L);
+        host.setOverflow("drop-head");
+        host.setLazy(true);
+
+        try (Channel channel = connection.createChannel()) {
+            channel.queueDeclare(host.getName(), true, false, false, QueueArguments.forHost(host));
+            channel.confirmSelect();
+            publish(channel, host.getName(), "first", "second");
+            assertTrue(channel.waitForConfirms(5000));
+
+            assertEquals(1, channel.queueDeclarePassive(host.getName()).getMessageCount());
+            assertEquals("second", new String(channel.basicGet(host.getName(), true).getBody(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void quorumQueueRejectsPublishesWhenFull() throws Exception {
+        Host host = createHost("quorum-host", "quorum");
+        host.setMaxLength(1L);
+        host.setOverflow("reject-publish");
+
+        try (Channel channel = connection.createChannel()) {
+            channel.queueDeclare(host.getName(), true, false, false, QueueArguments.forHost(host));
+            channel.confirmSelect();
+            publish(channel, host.getName(), "first");
+            assertTrue(channel.waitForConfirms(5000));
+            publish(channel, host.getName(), "second");
+            assertFalse(channel.waitForConfirms(5000));
+        }
+    }
+
+    @Test
+    void streamIsConsumedFromConfiguredOffset() throws Exception {
+        Host host = createHost("stream-host", "stream");
+        host.setMaxLengthBytes(10_000_000L);
+        host.setStreamOffset("first");
+
+        try (Channel channel = connection.createChannel()) {
+            channel.queueDeclare(host.getName(), true, false, false, QueueArguments.forHost(host));
+            channel.confirmSelect();
+            publish(channel, host.getName(), "first", "second", "third");
+            assertTrue(channel.waitForConfirms(5000));
+
+            BlockingQueue<Object> offsets = new LinkedBlockingQueue<>();
+            channel.basicQos(10);
+            channel.basicConsume(host.getName(), false, "stream-test", false, false, QueueArguments.consumerArguments(host, null), new DefaultConsumer(channel) {
+                @Override
+                public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
+                    offsets.add(properties.getHeaders().get(QueueArguments.STREAM_OFFSET));
+                    getChannel().basicAck(envelope.getDeliveryTag(), false);
+                }
+            });
+
+            for (int i = 0; i < 3; i++) {
+                assertInstanceOf(Number.class, offsets.poll(10, TimeUnit.SECONDS));
+            }
+        }
+    }
+
+    @Test
+    void streamResumesAfterLastDeliveredOffset() {
+        Host host = createHost("stream-host", "stream");
+        host.setStreamOffset("first");
+
+        assertEquals(Map.of(QueueArguments.STREAM_OFFSET, "first"), QueueArguments.consumerArguments(host, null));
+        assertEquals(Map.of(QueueArguments.STREAM_OFFSET, 42L), QueueArguments.consumerArguments(host, 42L));
+    }
+
+    @Test
+    void streamWithoutOffsetIsReadFromTheStart() {
+        Host host = createHost("stream-host", "stream");
+
+        assertEquals(Map.of(QueueArguments.STREAM_OFFSET, "first"), QueueArguments.consumerArguments(host, null));
+    }
+
+    @Test
+    void unsupportedSettingsAreRejected() {
+        Host stream = createHost("stream-host", "stream");
+        stream.setMaxLength(10L);
+        assertThrows(IllegalArgumentException.class, () -> QueueArguments.forHost(stream));
+
+        Host quorum = createHost("quorum-host", "quorum");
+        quorum.setOverflow("reject-publish-dlx");
+        assertThrows(IllegalArgumentException.class, () -> QueueArguments.forHost(quorum));
+    }
+
+    private static void publish(Channel channel, String queue, String... messages) throws Exception {
+        for (String message : List.of(messages)) {
+            channel.basicPublish("", queue, MessageProperties.PERSISTENT_BASIC, message.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Host createHost(String name, String queueType) {
+        Host host = new Host();
+        host.setName(name);
+        host.setQueueType(queueType);
+        return host;
+    }
+}
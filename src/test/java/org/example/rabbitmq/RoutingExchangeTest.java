@@ -0,0 +1,127 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import org.example.MessageHeader;
+import org.example.routing.Route;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers
+public class RoutingExchangeTest {
+
+    @Container
+    private static final RabbitMQContainer RABBIT_MQ_CONTAINER = new RabbitMQContainer(DockerImageName.parse("rabbitmq:latest"));
+
+    private static final String EXCHANGE = "routing-test";
+
+    private static Connection connection;
+
+    @BeforeAll
+    static void connect() throws Exception {
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setHost(RABBIT_MQ_CONTAINER.getHost());
+        connectionFactory.setPort(RABBIT_MQ_CONTAINER.getAmqpPort());
+        connection = connectionFactory.newConnection();
+    }
+
+    @AfterAll
+    static void disconnect() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void wildcardMatchesPresentValuesOnly() throws Exception {
+        try (Channel channel = bind(route("*", "*", null, "wildcard"))) {
+            assertEquals(1, publish(channel, header("A", "1.0", "2"), "wildcard"));
+            assertEquals(1, publish(channel, header("A", null, "2"), "wildcard"));
+        }
+    }
+
+    @Test
+    void absentPatternMatchesAnyValue() throws Exception {
+        try (Channel channel = bind(route("A", null, null, "absent"))) {
+            assertEquals(1, publish(channel, header("A", "1.0", null), "absent"));
+            assertEquals(2, publish(channel, header("A", "1.0", "2"), "absent"));
+            assertEquals(2, publish(channel, header("B", "1.0", "2"), "absent"));
+        }
+    }
+
+    @Test
+    void everyMatchingRouteGetsACopy() throws Exception {
+        try (Channel channel = bind(route("*", "*", "2", "external"), route("*", "*", "*", "internal"))) {
+            assertEquals(1, publish(channel, header("A", "1.0", "2"), "external"));
+            assertEquals(1, count(channel, "internal"));
+            assertEquals(1, publish(channel, header("A", "1.0", "3"), "external"));
+            assertEquals(2, count(channel, "internal"));
+        }
+    }
+
+    @Test
+    void sameRouteIsBoundOnce() {
+        Route route = route("A", "*", null, "host");
+        assertEquals(1, RoutingExchange.compile(List.of(route, route("A", "*", null, "host"))).size());
+
+        Map<String, Object> arguments = RoutingExchange.compile(List.of(route)).iterator().next().arguments();
+        assertEquals("A", arguments.get(RoutingExchange.MESSAGE_TYPE));
+        assertTrue(arguments.containsKey(RoutingExchange.MESSAGE_TYPE_VERSION));
+        assertFalse(arguments.containsKey(RoutingExchange.RECIPIENT));
+    }
+
+    private static Channel bind(Route... routes) throws Exception {
+        Channel channel = connection.createChannel();
+        channel.exchangeDelete(EXCHANGE);
+        channel.exchangeDeclare(EXCHANGE, BuiltinExchangeType.HEADERS, true);
+        for (RoutingExchange.Binding binding : RoutingExchange.compile(List.of(routes))) {
+            channel.queueDelete(binding.queue());
+            channel.queueDeclare(binding.queue(), true, false, false, null);
+            channel.queueBind(binding.queue(), EXCHANGE, "", binding.arguments());
+        }
+        channel.confirmSelect();
+        return channel;
+    }
+
+    /**
+     * @return The number of messages in the given queue after publishing
+     */
+    private static int publish(Channel channel, MessageHeader messageHeader, String queue) throws Exception {
+        Map<String, Object> headers = new HashMap<>();
+        RoutingExchange.putRoutingHeaders(headers, messageHeader);
+        channel.basicPublish(EXCHANGE, "", new AMQP.BasicProperties.Builder().headers(headers).build(), new byte[0]);
+        assertTrue(channel.waitForConfirms(5000));
+        return count(channel, queue);
+    }
+
+    private static int count(Channel channel, String queue) throws Exception {
+        return channel.queueDeclarePassive(queue).getMessageCount();
+    }
+
+    private static MessageHeader header(String messageType, String messageTypeVersion, String recipient) {
+        return new MessageHeader(messageType, messageTypeVersion, null, null, null, recipient);
+    }
+
+    private static Route route(String messageType, String messageTypeVersion, String recipient, String destination) {
+        Route route = new Route();
+        route.setMessageType(messageType);
+        route.setMessageTypeVersion(messageTypeVersion);
+        route.setRecipient(recipient);
+        route.setDestination(destination);
+        return route;
+    }
+}
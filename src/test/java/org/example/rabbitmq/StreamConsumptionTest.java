@@ -0,0 +1,114 @@
+package org.example.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import io.quarkus.test.common.QuarkusTestResource;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.example.IntegrationTestResource;
+import org.example.host.Host;
+import org.example.host.HostRuntime;
+import org.example.host.HostRuntimeRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * A stream only hands out as many deliveries as the prefetch allows until they are settled, so consuming more messages
+ * than that shows that rejected and nacked deliveries are released like acked ones.
+ */
+@QuarkusTest
+@QuarkusTestResource(IntegrationTestResource.class)
+public class StreamConsumptionTest {
+
+    private static final int PREFETCH_COUNT = 2;
+    private static final int MESSAGES = 5;
+
+    private final RabbitMQService rabbitMQService;
+    private final HostQueueConsumer hostQueueConsumer;
+    private final HostRuntimeRegistry hostRuntimeRegistry;
+    private final StreamOffsets streamOffsets;
+
+    @Inject
+    public StreamConsumptionTest(
+            RabbitMQService rabbitMQService,
+            HostQueueConsumer hostQueueConsumer,
+            HostRuntimeRegistry hostRuntimeRegistry,
+            StreamOffsets streamOffsets
+    ) {
+        this.rabbitMQService = rabbitMQService;
+        this.hostQueueConsumer = hostQueueConsumer;
+        this.hostRuntimeRegistry = hostRuntimeRegistry;
+        this.streamOffsets = streamOffsets;
+    }
+
+    @Test
+    void rejectedDeliveriesAdvanceTheStream() throws Exception {
+        Host host = createStreamHost("stream-rejecting-host");
+        publish(host);
+
+        // Deliveries of an unknown message type are rejected by the host consumer
+        HostRuntime runtime = hostRuntimeRegistry.register(host);
+        hostQueueConsumer.startConsuming(runtime);
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!Long.valueOf(MESSAGES).equals(streamOffsets.nextOffset(host.getName())) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(MESSAGES, streamOffsets.nextOffset(host.getName()));
+        } finally {
+            hostQueueConsumer.stopConsuming(runtime);
+            hostRuntimeRegistry.retire(host);
+        }
+    }
+
+    @Test
+    void nackedDeliveriesAdvanceTheStream() throws Exception {
+        Host host = createStreamHost("stream-nacking-host");
+        publish(host);
+
+        BlockingQueue<Object> offsets = new LinkedBlockingQueue<>();
+        rabbitMQService.consume(host.getName(), PREFETCH_COUNT, "stream-nack-test", QueueArguments.consumerArguments(host, null), new DefaultConsumer(null) {
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+                rabbitMQService.trackDelivery(host.getName(), envelope.getDeliveryTag());
+                offsets.add(properties.getHeaders().get(QueueArguments.STREAM_OFFSET));
+                rabbitMQService.nack(host.getName(), envelope.getDeliveryTag());
+            }
+        });
+        try {
+            for (int i = 0; i < MESSAGES; i++) {
+                assertNotNull(offsets.poll(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            rabbitMQService.cancelConsumer(host.getName(), "stream-nack-test");
+        }
+    }
+
+    private void publish(Host host) throws Exception {
+        rabbitMQService.declareQueue(host.getName(), QueueArguments.forHost(host));
+        for (int i = 0; i < MESSAGES; i++) {
+            byte[] payload = ("message " + i).getBytes(StandardCharsets.UTF_8);
+            rabbitMQService.publish(host.getName(), "message-" + i, "unknown", Map.of(), new PayloadEncoding.Encoded(null, payload))
+                    .get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static Host createStreamHost(String name) {
+        Host host = new Host();
+        host.setName(name);
+        host.setUrl("http://localhost:1");
+        host.setMessagingEndpoint("/messaging");
+        host.setQueueType("stream");
+        host.setPrefetchCount(PREFETCH_COUNT);
+        return host;
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.rabbitmq;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class StreamOffsetsTest {
+
+    @TempDir
+    private Path offsetDirectory;
+
+    @Test
+    void pausedConsumerResumesAfterLastReceivedOffset() {
+        StreamOffsets streamOffsets = new StreamOffsets(Optional.empty());
+        assertNull(streamOffsets.nextOffset("host"));
+
+        streamOffsets.received("host", 3);
+        streamOffsets.received("host", 4);
+        assertEquals(5, streamOffsets.nextOffset("host"));
+    }
+
+    @Test
+    void releasedDeliveryIsReadAgain() {
+        StreamOffsets streamOffsets = new StreamOffsets(Optional.empty());
+        streamOffsets.received("host", 3);
+        streamOffsets.received("host", 4);
+        streamOffsets.rewind("host", 4);
+        streamOffsets.settled("host", 4);
+        streamOffsets.received("host", 5);
+        assertEquals(4, streamOffsets.nextOffset("host"));
+
+        streamOffsets.received("host", 4);
+        assertEquals(6, streamOffsets.nextOffset("host"));
+    }
+
+    @Test
+    void restartResumesAtLowestUnsettledOffset() {
+        StreamOffsets streamOffsets = new StreamOffsets(Optional.of(offsetDirectory.toString()));
+        streamOffsets.received("host", 0);
+        streamOffsets.received("host", 1);
+        streamOffsets.received("host", 2);
+        streamOffsets.settled("host", 0);
+        streamOffsets.settled("host", 2);
+        streamOffsets.flush();
+        assertEquals(1, new StreamOffsets(Optional.of(offsetDirectory.toString())).nextOffset("host"));
+
+        streamOffsets.settled("host", 1);
+        streamOffsets.destroy();
+        assertEquals(3, new StreamOffsets(Optional.of(offsetDirectory.toString())).nextOffset("host"));
+        assertNull(new StreamOffsets(Optional.of(offsetDirectory.toString())).nextOffset("other-host"));
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.routing;
+
+import java.util.List;
+
+/**
+ * The original route lookup, a scan over the route list in file order, kept as the reference for {@link RoutingTable}.
+ */
+public class LinearRouteMatcher {
+
+    private final List<Route> routes;
+
+    public LinearRouteMatcher(List<Route> routes) {
+        this.routes = routes;
+    }
+
+    public String getDestination(RoutingCriteria routingCriteria) {
+        return routes.stream()
+                .filter(route -> matches(route.getMessageType(), routingCriteria.messageType()))
+                .filter(route -> matches(route.getMessageTypeVersion(), routingCriteria.messageTypeVersion()))
+                .filter(route -> matches(route.getRecipient(), routingCriteria.recipient()))
+                .map(Route::getDestination)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private boolean matches(String pattern, String value) {
+        if (pattern == null || value == null) {
+            return pattern == null && value == null;
+        }
+        if (pattern.equals("*")) {
+            return true;
+        }
+        return pattern.equals(value);
+    }
+}
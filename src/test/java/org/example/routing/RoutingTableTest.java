@@ -0,0 +1,82 @@
+package org.example.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class RoutingTableTest {
+
+    private static final String[] MESSAGE_TYPES = {"2007", "2021", "4001", "*", null};
+    private static final String[] VERSIONS = {"3.1.0.0", "3.5.0.0", "*", null};
+    private static final String[] RECIPIENTS = {"0001", "0002", "0003", "*", null};
+
+    @Test
+    void firstMatchWins() {
+        RoutingTable routingTable = RoutingTable.compile(List.of(
+                createRoute("*", "*", "0002", "first"),
+                createRoute("2007", "3.5.0.0", "0002", "shadowed"),
+                createRoute("2007", "*", "*", "exact-type"),
+                createRoute("*", "*", "*", "fallback")
+        ));
+
+        assertEquals("first", routingTable.getDestination(new RoutingCriteria("2007", "3.5.0.0", "0002")));
+        assertEquals("exact-type", routingTable.getDestination(new RoutingCriteria("2007", "3.5.0.0", "0001")));
+        assertEquals("fallback", routingTable.getDestination(new RoutingCriteria("2021", "3.5.0.0", "0001")));
+    }
+
+    @Test
+    void wildcardDoesNotMatchAbsentValue() {
+        RoutingTable routingTable = RoutingTable.compile(List.of(
+                createRoute("*", "*", "*", "any"),
+                createRoute("*", "*", null, "no-recipient")
+        ));
+
+        assertEquals("no-recipient", routingTable.getDestination(new RoutingCriteria("2007", "3.5.0.0", null)));
+        assertNull(routingTable.getDestination(new RoutingCriteria(null, "3.5.0.0", "0001")));
+    }
+
+    /**
+     * Random route lists and criteria from small value sets, so that overlapping patterns are common.
+     */
+    @Test
+    void matchesLinearScan() {
+        Random random = new Random(20240101L);
+        for (int table = 0; table < 500; table++) {
+            List<Route> routes = new ArrayList<>();
+            int routeCount = random.nextInt(30);
+            for (int i = 0; i < routeCount; i++) {
+                routes.add(createRoute(pick(random, MESSAGE_TYPES), pick(random, VERSIONS), pick(random, RECIPIENTS), "destination-" + i));
+            }
+            RoutingTable routingTable = RoutingTable.compile(routes);
+            LinearRouteMatcher linearRouteMatcher = new LinearRouteMatcher(routes);
+
+            for (int lookup = 0; lookup < 50; lookup++) {
+                RoutingCriteria routingCriteria = new RoutingCriteria(pick(random, MESSAGE_TYPES), pick(random, VERSIONS), pick(random, RECIPIENTS));
+                assertEquals(linearRouteMatcher.getDestination(routingCriteria), routingTable.getDestination(routingCriteria),
+                        () -> routingCriteria + " in table " + routes.stream().map(RoutingTableTest::toString).toList());
+            }
+        }
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    static Route createRoute(String messageType, String messageTypeVersion, String recipient, String destination) {
+        Route route = new Route();
+        route.setMessageType(messageType);
+        route.setMessageTypeVersion(messageTypeVersion);
+        route.setRecipient(recipient);
+        route.setDestination(destination);
+        return route;
+    }
+
+    private static String toString(Route route) {
+        return route.getMessageType() + "," + route.getMessageTypeVersion() + "," + route.getRecipient() + "," + route.getDestination();
+    }
+}
@@ -0,0 +1,19 @@
+package org.example.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MessageTypeTagsTest {
+
+    @Test
+    void messageTypesBeyondLimitAreOther() {
+        MessageTypeTags messageTypeTags = new MessageTypeTags(2);
+
+        assertEquals("2021", messageTypeTags.tag("2021"));
+        assertEquals("2022", messageTypeTags.tag("2022"));
+        assertEquals(MessageTypeTags.OTHER, messageTypeTags.tag("2023"));
+        assertEquals("2021", messageTypeTags.tag("2021"));
+        assertEquals(MessageTypeTags.NONE, messageTypeTags.tag(null));
+    }
+}
@@ -0,0 +1,84 @@
+package org.example.util;
+
+import org.example.MessageBuilder;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.example.XmlAssertions.assertSameContent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+public class XmlSerializerTest {
+
+    private final XmlUtilityService xmlUtilityService = new XmlUtilityService(4);
+
+    @Test
+    void messageRoundTrip() throws Exception {
+        Element message = new MessageBuilder("TrainCompositionMessage", "3.5.0.0")
+                .element("TrainCompositionJourneySection")
+                .text("Remark", "a < b & c > \"d\" \r\n\t \uD83D\uDE82 \u00E4\u20AC")
+                .attribute("Code", "\"x\" & <y>\n")
+                .build();
+
+        assertRoundTrip(message);
+    }
+
+    @Test
+    void inheritedNamespacesAreDeclared() throws Exception {
+        Document document = parse("""
+                <soap:Envelope xmlns:soap="urn:soap" xmlns="urn:default" xmlns:a="urn:attributes">
+                    <soap:Body><Message a:id="1"><Empty/><inner:Child xmlns:inner="urn:inner"><unqualified xmlns=""/></inner:Child></Message></soap:Body>
+                </soap:Envelope>""");
+        Element message = (Element) document.getElementsByTagNameNS("urn:default", "Message").item(0);
+
+        Element serialized = assertRoundTrip(message);
+        assertNotNull(serialized.getAttributeNodeNS("urn:attributes", "id"));
+    }
+
+    @Test
+    void namespacedAttributeWithoutPrefixGetsOne() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element message = document.createElementNS("urn:default", "Message");
+        message.setAttributeNS("urn:attributes", "id", "1");
+        document.appendChild(message);
+
+        Element serialized = assertRoundTrip(message);
+        assertEquals("1", serialized.getAttributeNS("urn:attributes", "id"));
+    }
+
+    @Test
+    void pooledBufferIsReset() throws Exception {
+        Element message = new MessageBuilder("ReceiptConfirmationMessage", "3.5.0.0").build();
+        String first = xmlUtilityService.serialize(message, XmlSerializerTest::toString);
+        String second = xmlUtilityService.serialize(message, XmlSerializerTest::toString);
+
+        assertEquals(first, second);
+    }
+
+    private Element assertRoundTrip(Element element) throws Exception {
+        byte[] bytes = xmlUtilityService.serialize(element, (buffer, length) -> Arrays.copyOf(buffer, length));
+        String xml = new String(bytes, StandardCharsets.UTF_8);
+        Element parsed = parse(xml).getDocumentElement();
+        element.normalize();
+        assertSameContent(element, parsed, xml);
+        return parsed;
+    }
+
+    private static Document parse(String xml) throws Exception {
+        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+        return documentBuilderFactory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+    }
+
+    private static String toString(byte[] buffer, int length) {
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,61 @@
+package org.example.validation;
+
+import org.example.util.XmlUtilityService;
+import org.junit.jupiter.api.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MessageContentFilterTest {
+
+    private static final String SCHEMA = """
+            <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema" targetNamespace="urn:test" elementFormDefault="qualified">
+                <xs:element name="Message">
+                    <xs:complexType>
+                        <xs:sequence>
+                            <xs:element name="Value" type="xs:int"/>
+                        </xs:sequence>
+                    </xs:complexType>
+                </xs:element>
+            </xs:schema>""";
+
+    private final XmlUtilityService xmlUtilityService = new XmlUtilityService(4);
+
+    @Test
+    void wrapperIsSkipped() {
+        assertDoesNotThrow(() -> validate("<message>\n  <Message xmlns=\"urn:test\"><Value>1</Value></Message>\n</message>"));
+    }
+
+    @Test
+    void contentIsValidated() {
+        assertThrows(SAXException.class, () -> validate("<message><Message xmlns=\"urn:test\"><Value>one</Value></Message></message>"));
+    }
+
+    @Test
+    void wrapperMustContainOneElement() {
+        SAXException empty = assertThrows(SAXException.class, () -> validate("<message> </message>"));
+        assertEquals("Size not 1", empty.getMessage());
+        SAXException two = assertThrows(SAXException.class,
+                () -> validate("<message><Message xmlns=\"urn:test\"><Value>1</Value></Message><Message xmlns=\"urn:test\"/></message>"));
+        assertEquals("Size not 1", two.getMessage());
+    }
+
+    private void validate(String message) throws Exception {
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(new StreamSource(new StringReader(SCHEMA)));
+        MessageContentFilter messageContentFilter = new MessageContentFilter(xmlUtilityService.createXMLReader());
+        InputSource inputSource = new InputSource(new ByteArrayInputStream(message.getBytes(StandardCharsets.UTF_8)));
+        schema.newValidator().validate(new SAXSource(messageContentFilter, inputSource));
+    }
+}